@@ -0,0 +1,27 @@
+package partition.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BenchmarkMain.java
+ * BenchmarkMain runs the JMH benchmarks with the GC profiler switched on, so every result is reported both in ops/s and in bytes
+ * allocated per operation (gc.alloc.rate.norm). Any JMH option may be passed, e.g. a benchmark filter:
+ *     java -jar benchmarks/target/benchmarks.jar SamplerBenchmark -p size=6
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if(options.contains("-prof") == false) {
+            options.add("-prof");
+            options.add("gc");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+
+}
@@ -0,0 +1,57 @@
+package partition.benchmarks;
+
+import partition.BacktrackPolicy;
+import partition.Partitioner;
+import partition.RandomStreams;
+import partition.SquaretopiaMatrix;
+import partition.TrialResult;
+
+/**
+ * Fixtures.java
+ * Fixtures builds the seeded inputs the benchmarks share, so every run of a benchmark measures exactly the same work.
+ */
+final class Fixtures {
+
+    static final long SEED = 20210505L; // seed of every random stream the benchmarks draw from
+
+    private Fixtures() {
+    }
+
+    /**
+     * Partitions a number of Squaretopias with a seeded Partitioner.
+     * @param size Integer number of the Squaretopia's size
+     * @param numOfPartitions Integer number of partitions we will generate
+     * @return SquaretopiaMatrix array of flat matrices holding the partitions
+     */
+    static SquaretopiaMatrix[] partitions(int size, int numOfPartitions) {
+        Partitioner partitioner = new Partitioner(size, BacktrackPolicy.FULL_RESTART, RandomStreams.seeded(SEED));
+        SquaretopiaMatrix[] partitions = new SquaretopiaMatrix[numOfPartitions];
+        for (int i = 0; i < numOfPartitions; i++) {
+            partitions[i] = toMatrix(partitioner.sample(i));
+        }
+        return partitions;
+    }
+
+    /**
+     * Copies the districts of a result into a new flat matrix, marking every district cell as checked.
+     * @param result TrialResult whose districts we will copy
+     * @return SquaretopiaMatrix holding the districts of the result
+     */
+    static SquaretopiaMatrix toMatrix(TrialResult result) {
+        int rows = result.numberOfRows();
+        int columns = result.numberOfColumns();
+        SquaretopiaMatrix matrix = new SquaretopiaMatrix(rows + 2, columns + 2, true);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                int districtNumber = result.districtNumber(row, col);
+                if(districtNumber > 0) {
+                    int index = matrix.index(row + 1, col + 1);
+                    matrix.setDistrictNumber(index, districtNumber);
+                    matrix.setChecked(index, true);
+                }
+            }
+        }
+        return matrix;
+    }
+
+}
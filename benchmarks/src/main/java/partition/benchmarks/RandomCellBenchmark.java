@@ -0,0 +1,78 @@
+package partition.benchmarks;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import partition.DistrictingEngine;
+import partition.IndexedCellSet;
+import partition.MatrixBoard;
+import partition.SquaretopiaCell;
+import partition.SquaretopiaMatrix;
+
+/**
+ * RandomCellBenchmark.java
+ * RandomCellBenchmark measures the ways of choosing a free cell at random: the O(1) IndexedCellSet.randomCell(), the engine's
+ * firstCell() (which looks for dead ends first), and, as the baseline, the original randomCell() that walked a HashSet of
+ * SquaretopiaCells with an iterator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomCellBenchmark {
+
+    @Param({"5", "10", "20"})
+    public int size; // Squaretopia size (n)
+
+    private SquaretopiaMatrix matrix;       // empty Squaretopia
+    private IndexedCellSet indexedCells;    // free cells of the matrix
+    private Set<SquaretopiaCell> cellSet;   // free cells of the matrix, as the original samplers kept them
+    private DistrictingEngine engine;       // engine whose firstCell() we measure
+    private SplittableRandom random;        // seeded generator every variant draws from
+
+    @Setup
+    public void setUp() {
+        matrix = new SquaretopiaMatrix(size + 2, size + 2, true);
+        indexedCells = matrix.generateIndexedSetOfFreeCells();
+        cellSet = new SquaretopiaMatrix(size + 2, size + 2).generateSetOfFreeCells();
+        engine = new DistrictingEngine(new MatrixBoard(matrix, indexedCells), size, true);
+        random = new SplittableRandom(Fixtures.SEED);
+    }
+
+    @Benchmark
+    public int indexedCellSet() {
+        return indexedCells.randomCell(random);
+    }
+
+    @Benchmark
+    public int engineFirstCell() {
+        return engine.firstCell(random);
+    }
+
+    @Benchmark
+    public SquaretopiaCell hashSetIterator() {
+        int chosenCellIndex = random.nextInt(cellSet.size());
+        Iterator<SquaretopiaCell> it = cellSet.iterator();
+        for (int i = 0; i < chosenCellIndex; i++) {
+            it.next();
+        }
+        return it.next();
+    }
+
+}
@@ -0,0 +1,81 @@
+package partition.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import partition.BitboardPartitioner;
+import partition.PartitionOptions;
+import partition.Partitioner;
+import partition.RandomStreams;
+import partition.ResultSink;
+import partition.SingleDistricter;
+import partition.UnboundedSingleDistricter;
+import partition.WeightedPartitioner;
+import partition.WeightedSingleDistricter;
+import partition.WeightedUnboundedSingleDistricter;
+
+/**
+ * SamplerBenchmark.java
+ * SamplerBenchmark measures the trials per second of each sampler through its Partition entry point, across sizes.
+ * Each invocation is one Partition call of TRIALS_PER_CALL seeded trials into a sink that discards them, so the score includes
+ * everything a caller pays for: constructing the sampler, its trials and handing every result to the sink.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SamplerBenchmark {
+
+    static final int TRIALS_PER_CALL = 100; // number of trials of each Partition call
+
+    @Param({"Partitioner", "WeightedPartitioner", "SingleDistricter", "WeightedSingleDistricter", "UnboundedSingleDistricter", "WeightedUnboundedSingleDistricter",
+            "BitboardPartitioner", "WeightedBitboardPartitioner"})
+    public String sampler; // simple name of the sampler class
+
+    @Param({"4", "5", "6", "7"})
+    public int size;       // Squaretopia size (n)
+
+    @Param({"50"})
+    public double probability; // weighting factor probability of the weighted samplers
+
+    private ResultSink sink; // throws every result away
+    private long calls;      // number of Partition calls so far, which seeds the next call
+
+    @Setup
+    public void setUp() {
+        sink = ResultSink.discard();
+        calls = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS_PER_CALL)
+    public void partition() {
+        PartitionOptions options = PartitionOptions.DEFAULT.withStreams(RandomStreams.seeded(Fixtures.SEED + calls++)).withSink(sink); // every call draws new trials
+        switch (sampler) {
+            case "Partitioner" -> Partitioner.Partition(size, TRIALS_PER_CALL, options);
+            case "WeightedPartitioner" -> WeightedPartitioner.Partition(size, TRIALS_PER_CALL, probability, options);
+            case "SingleDistricter" -> SingleDistricter.Partition(size, TRIALS_PER_CALL, options);
+            case "WeightedSingleDistricter" -> WeightedSingleDistricter.Partition(size, TRIALS_PER_CALL, probability, options);
+            case "UnboundedSingleDistricter" -> UnboundedSingleDistricter.Partition(size, TRIALS_PER_CALL, options);
+            case "WeightedUnboundedSingleDistricter" -> WeightedUnboundedSingleDistricter.Partition(size, TRIALS_PER_CALL, probability, options);
+            case "BitboardPartitioner" -> BitboardPartitioner.Partition(size, TRIALS_PER_CALL, options);
+            case "WeightedBitboardPartitioner" -> BitboardPartitioner.Partition(size, TRIALS_PER_CALL, probability, options);
+            default -> throw new IllegalArgumentException("unknown sampler " + sampler);
+        }
+    }
+
+}
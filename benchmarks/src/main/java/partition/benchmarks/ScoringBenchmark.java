@@ -0,0 +1,84 @@
+package partition.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import partition.CompactnessScores;
+import partition.SquaretopiaMatrix;
+
+/**
+ * ScoringBenchmark.java
+ * ScoringBenchmark measures each scoring method of SquaretopiaMatrix on a fixed set of seeded partitions, cycling through the set so
+ * that no single partition's shape dominates. The fused calculateCompactnessScores() is measured next to the four separate scans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private static final int NUMBER_OF_PARTITIONS = 64; // size of the fixed set of partitions (a power of two)
+
+    @Param({"5", "7", "10"})
+    public int size; // Squaretopia size (n)
+
+    private SquaretopiaMatrix[] partitions; // the fixed set of seeded partitions
+    private CompactnessScores scores;       // reused by calculateCompactnessScores()
+    private int next;                       // position of the next partition to score
+
+    @Setup
+    public void setUp() {
+        partitions = Fixtures.partitions(size, NUMBER_OF_PARTITIONS);
+        scores = new CompactnessScores(size);
+        next = 0;
+    }
+
+    // the next partition of the fixed set
+    private SquaretopiaMatrix nextPartition() {
+        return partitions[next++ & (NUMBER_OF_PARTITIONS - 1)];
+    }
+
+    @Benchmark
+    public double lengthWidth() {
+        return nextPartition().LengthWidth();
+    }
+
+    @Benchmark
+    public double reock() {
+        return nextPartition().Reock();
+    }
+
+    @Benchmark
+    public double schwartzberg() {
+        return nextPartition().Schwartzberg();
+    }
+
+    @Benchmark
+    public double polsbyPopper() {
+        return nextPartition().PolsbyPopper();
+    }
+
+    @Benchmark
+    public int[] perimeters() {
+        return nextPartition().calculatePerimeters();
+    }
+
+    @Benchmark
+    public CompactnessScores fusedScores() {
+        return nextPartition().calculateCompactnessScores(scores);
+    }
+
+}
@@ -0,0 +1,85 @@
+package partition.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import partition.SquaretopiaMatrix;
+
+/**
+ * ValidMapBenchmark.java
+ * ValidMapBenchmark measures the cost of checking that a partially partitioned Squaretopia can still be completed: the full
+ * validMap() flood fill, the component sizes it is built on, and the incremental claimKeepsMapValid() check the engine prunes with.
+ * The maps are seeded partitions with their second half of districts freed again and one random free cell claimed as the first cell
+ * of the next district, which is what the engine sees halfway through a map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidMapBenchmark {
+
+    private static final int NUMBER_OF_MAPS = 64; // size of the fixed set of maps (a power of two)
+
+    @Param({"5", "7", "10", "16"})
+    public int size; // Squaretopia size (n)
+
+    private SquaretopiaMatrix[] maps; // partially partitioned maps
+    private int[] claimedCells;       // claimedCells[i] is the cell of maps[i] that was just claimed
+    private int[] groupSizes;         // scratch array for freeComponentSizes()
+    private int next;                 // position of the next map
+
+    @Setup
+    public void setUp() {
+        maps = Fixtures.partitions(size, NUMBER_OF_MAPS);
+        claimedCells = new int[NUMBER_OF_MAPS];
+        SplittableRandom random = new SplittableRandom(Fixtures.SEED);
+        for (int i = 0; i < NUMBER_OF_MAPS; i++) {
+            SquaretopiaMatrix map = maps[i];
+            int keptDistricts = size / 2;
+            for (int index = 0; index < map.cellCount(); index++) {
+                if(map.getDistrictNumber(index) > keptDistricts) { // free every district after the first half
+                    map.setDistrictNumber(index, 0);
+                    map.setChecked(index, false);
+                }
+            }
+            do {
+                claimedCells[i] = random.nextInt(map.cellCount());
+            } while(map.isChecked(claimedCells[i]));
+            map.setDistrictNumber(claimedCells[i], keptDistricts + 1);
+            map.setChecked(claimedCells[i], true);
+        }
+        groupSizes = new int[maps[0].cellCount()];
+        next = 0;
+    }
+
+    @Benchmark
+    public Boolean validMap() {
+        return maps[next++ & (NUMBER_OF_MAPS - 1)].validMap();
+    }
+
+    @Benchmark
+    public int freeComponentSizes() {
+        return maps[next++ & (NUMBER_OF_MAPS - 1)].freeComponentSizes(groupSizes);
+    }
+
+    @Benchmark
+    public boolean claimKeepsMapValid() {
+        int i = next++ & (NUMBER_OF_MAPS - 1);
+        return maps[i].claimKeepsMapValid(claimedCells[i], size, size - 1);
+    }
+
+}
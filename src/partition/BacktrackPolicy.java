@@ -0,0 +1,65 @@
+package partition;
+
+/**
+ * BacktrackPolicy.java
+ * BacktrackPolicy decides what a Partitioner does when a district cannot be grown in a partially partitioned Squaretopia.
+ * With a full restart, the whole map is thrown away and partitioned again from scratch. Otherwise the last few districts are
+ * returned and grown again, which keeps the valid prefix of the map, until the number of retries for the map runs out and the
+ * map is restarted after all.
+ * NOTE: Re-sampling districts keeps earlier districts that a full restart would have thrown away, so the partitions it produces are
+ * not distributed exactly like those produced with full restarts.
+ */
+public final class BacktrackPolicy {
+
+    public static final BacktrackPolicy FULL_RESTART = new BacktrackPolicy(0, 0); // throw away the whole map whenever a district fails
+
+    private final int districtsToResample; // number of most recently grown districts that are returned when a district fails
+    private final int maxRetries;          // number of times a single map may be backtracked into before it is restarted
+
+    /**
+     * Constructs a policy that re-samples the last few districts when a district fails.
+     * NOTE: Re-sampling 0 districts simply chooses a new first cell for the district that failed.
+     * @param districtsToResample Integer number of most recently grown districts that are returned when a district fails
+     * @param maxRetries Integer number of times a single map may be backtracked into before it is restarted from scratch
+     * @return void
+     */
+    public BacktrackPolicy(int districtsToResample, int maxRetries) {
+        if(districtsToResample < 0 || maxRetries < 0) {
+            throw new IllegalArgumentException("districtsToResample and maxRetries must not be negative");
+        }
+        this.districtsToResample = districtsToResample;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @return Integer number of most recently grown districts that are returned when a district fails
+     */
+    public int districtsToResample() {
+        return districtsToResample;
+    }
+
+    /**
+     * @return Integer number of times a single map may be backtracked into before it is restarted from scratch
+     */
+    public int maxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Determines if a map should be backtracked into instead of being restarted.
+     * @param retriesSoFar Integer number of times the map has already been backtracked into
+     * @return Boolean value for the statement: The map should be backtracked into.
+     */
+    public boolean shouldBacktrack(int retriesSoFar) {
+        return retriesSoFar < maxRetries;
+    }
+
+    @Override
+    public String toString() {
+        if(maxRetries == 0) {
+            return "full restart";
+        }
+        return "re-sample last " + districtsToResample + " district(s), up to " + maxRetries + " retries";
+    }
+
+}
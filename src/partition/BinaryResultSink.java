@@ -0,0 +1,116 @@
+package partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * BinaryResultSink.java
+ * BinaryResultSink writes results in a compact binary format that can be read back with read() instead of being parsed from text.
+ * Each result is written as
+ *     int trial index, short rows, short columns, byte bytes per cell (1 or 2), one district number per inner cell (row after row),
+ *     byte number of scores, one double per score
+ * where district numbers take a single unsigned byte unless some district number of the result is above 255.
+ * NOTE: Flushing the sink flushes the stream it writes to, but the stream is never closed by this sink.
+ */
+public final class BinaryResultSink implements ResultSink {
+
+    private final DataOutputStream out; // buffered stream we write to
+
+    /**
+     * Constructs a sink that writes to a stream.
+     * @param out OutputStream that we will write the results to
+     * @return void
+     */
+    public BinaryResultSink(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+    }
+
+    @Override
+    public void accept(TrialResult result) {
+        try {
+            int rows = result.numberOfRows();
+            int columns = result.numberOfColumns();
+            int bytesPerCell = 1;
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if(result.districtNumber(i, j) > 255) {
+                        bytesPerCell = 2;
+                    }
+                }
+            }
+            out.writeInt(result.trialIndex());
+            out.writeShort(rows);
+            out.writeShort(columns);
+            out.writeByte(bytesPerCell);
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if(bytesPerCell == 1) {
+                        out.writeByte(result.districtNumber(i, j));
+                    } else {
+                        out.writeShort(result.districtNumber(i, j));
+                    }
+                }
+            }
+            double[] scores = result.scores();
+            out.writeByte(scores == null ? 0 : scores.length);
+            if(scores != null) {
+                for (double score : scores) {
+                    out.writeDouble(score);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads every result that a BinaryResultSink wrote to a stream and hands them to another sink, in the order they were written.
+     * @param in InputStream that a BinaryResultSink wrote to
+     * @param sink ResultSink that will receive the results
+     * @return Integer number of results read
+     * @throws IOException if the stream cannot be read or ends in the middle of a result
+     */
+    public static int read(InputStream in, ResultSink sink) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        int numOfResults = 0;
+        while(true) {
+            int trialIndex;
+            try {
+                trialIndex = data.readInt();
+            } catch (EOFException e) { // the stream ended between two results
+                return numOfResults;
+            }
+            int rows = data.readUnsignedShort();
+            int columns = data.readUnsignedShort();
+            int bytesPerCell = data.readUnsignedByte();
+            int[] districts = new int[rows * columns];
+            for (int k = 0; k < districts.length; k++) {
+                districts[k] = bytesPerCell == 1 ? data.readUnsignedByte() : data.readUnsignedShort();
+            }
+            int numOfScores = data.readUnsignedByte();
+            double[] scores = numOfScores == 0 ? null : new double[numOfScores];
+            for (int s = 0; s < numOfScores; s++) {
+                scores[s] = data.readDouble();
+            }
+            sink.accept(new TrialResult(trialIndex, rows, columns, districts, scores));
+            numOfResults++;
+        }
+    }
+
+}
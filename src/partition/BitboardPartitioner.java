@@ -0,0 +1,169 @@
+package partition;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * BitboardPartitioner.java
+ * BitboardPartitioner partitions an n by n Squaretopia into n equally sized contiguous districts, for n <= 8, with the same
+ * DistrictingEngine search as Partitioner (or WeightedPartitioner, when it is given a weighting factor probability) and the same
+ * output format, but on a LongBitboard, which keeps the free cells and transitions in long bitmasks instead of a SquaretopiaMatrix.
+ * Like the other engine samplers, it records the log of the probability of every random draw of the accepted attempt with the
+ * sample (see DistrictingEngine.logProposal()).
+ * NOTE: The two boards break ties differently where the search claims a cell without a draw: among several dead ends or isolated
+ * cells, LongBitboard takes the lowest one and MatrixBoard the first one in its buckets, which depends on the order the cells were
+ * claimed and returned in. LongBitboard can also prune claims that SquaretopiaMatrix.claimKeepsMapValid() lets through. So
+ * seeded runs of this sampler and Partitioner do not produce the same maps, and their distributions of maps and of searches can
+ * differ as well. Each sampler's logProposal() is the probability of its own search.
+ */
+public class BitboardPartitioner implements TrialSampler {
+
+    public static final int MAX_SIZE = LongBitboard.MAX_SIZE; // largest n whose n * n cells fit in a long
+
+    private final int size;                   // n, the number of rows, columns and districts
+    private final LongBitboard board;         // Squaretopia that every trial of this sampler districts again
+    private final DistrictingEngine engine;   // this sampler's own districting engine
+    private final RandomStreams streams;      // random number generator of each trial
+    private final RestartSchedule schedule;   // work budget of each attempt at a trial
+    private final BacktrackPolicy policy;     // what happens when a district cannot be grown
+    private final CompactnessScores scores;   // reused by every trial to score its partition
+
+    /**
+     * Prepares the Squaretopia partitioning process with bitboards.
+     * NOTE: A map in which some district cannot be grown is thrown away and partitioned again from scratch (see BacktrackPolicy.FULL_RESTART).
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param numOfTrials Integer number for the number of Squaretopias we will partition
+     * @return void
+     */
+    public static void Partition (int size, int numOfTrials) {
+        Partition(size, numOfTrials, PartitionOptions.DEFAULT);
+    }
+
+    /**
+     * Prepares the Squaretopia weighted partitioning process with bitboards.
+     * NOTE: The weighting factor probability argument must be greater than or equal to 0 AND less than or equal to 100.
+     * NOTE: A map in which some district cannot be grown is thrown away and partitioned again from scratch (see BacktrackPolicy.FULL_RESTART).
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param numOfTrials Integer number for the number of Squaretopias we will partition
+     * @param probability Double value for our weighting factor probability
+     * @return void
+     */
+    public static void Partition (int size, int numOfTrials, double probability) {
+        Partition(size, numOfTrials, probability, PartitionOptions.DEFAULT);
+    }
+
+    /**
+     * Prepares the Squaretopia partitioning process with bitboards and the given options (see PartitionOptions).
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param numOfTrials Integer number for the number of Squaretopias we will partition
+     * @param options PartitionOptions that choose the backtrack policy, restart schedule, random streams, result sink and runner of the run
+     * @return void
+     */
+    public static void Partition (int size, int numOfTrials, PartitionOptions options) {
+        options.run(numOfTrials, streams -> new BitboardPartitioner(size, options.policy(), streams, options.schedule()));
+    }
+
+    /**
+     * Prepares the Squaretopia weighted partitioning process with bitboards and the given options (see PartitionOptions).
+     * NOTE: The weighting factor probability argument must be greater than or equal to 0 AND less than or equal to 100.
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param numOfTrials Integer number for the number of Squaretopias we will partition
+     * @param probability Double value for our weighting factor probability
+     * @param options PartitionOptions that choose the backtrack policy, restart schedule, random streams, result sink and runner of the run
+     * @return void
+     */
+    public static void Partition (int size, int numOfTrials, double probability, PartitionOptions options) {
+        options.run(numOfTrials, streams -> new BitboardPartitioner(size, probability, options.policy(), streams, options.schedule()));
+    }
+
+    /**
+     * Constructs a sampler that partitions an n by n Squaretopia like Partitioner.
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param policy BacktrackPolicy that decides what happens when a district cannot be grown
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @return void
+     */
+    public BitboardPartitioner (int size, BacktrackPolicy policy, RandomStreams streams) {
+        this(size, false, 0, policy, streams, RestartSchedule.NONE);
+    }
+
+    /**
+     * Constructs a sampler that partitions an n by n Squaretopia like Partitioner.
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param policy BacktrackPolicy that decides what happens when a district cannot be grown
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @param schedule RestartSchedule that limits the work of each attempt at a trial (see RestartSchedule.NONE)
+     * @return void
+     */
+    public BitboardPartitioner (int size, BacktrackPolicy policy, RandomStreams streams, RestartSchedule schedule) {
+        this(size, false, 0, policy, streams, schedule);
+    }
+
+    /**
+     * Constructs a sampler that partitions an n by n Squaretopia like WeightedPartitioner.
+     * NOTE: The weighting factor probability argument must be greater than or equal to 0 AND less than or equal to 100.
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param probability Double value for our weighting factor probability
+     * @param policy BacktrackPolicy that decides what happens when a district cannot be grown
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @return void
+     */
+    public BitboardPartitioner (int size, double probability, BacktrackPolicy policy, RandomStreams streams) {
+        this(size, true, probability, policy, streams, RestartSchedule.NONE);
+    }
+
+    /**
+     * Constructs a sampler that partitions an n by n Squaretopia like WeightedPartitioner.
+     * NOTE: The weighting factor probability argument must be greater than or equal to 0 AND less than or equal to 100.
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @param probability Double value for our weighting factor probability
+     * @param policy BacktrackPolicy that decides what happens when a district cannot be grown
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @param schedule RestartSchedule that limits the work of each attempt at a trial (see RestartSchedule.NONE)
+     * @return void
+     */
+    public BitboardPartitioner (int size, double probability, BacktrackPolicy policy, RandomStreams streams, RestartSchedule schedule) {
+        this(size, true, probability, policy, streams, schedule);
+    }
+
+    private BitboardPartitioner (int size, boolean weighted, double probability, BacktrackPolicy policy, RandomStreams streams, RestartSchedule schedule) {
+        this.size = size;
+        this.board = new LongBitboard(size);
+        // districts must leave a valid map behind
+        this.engine = weighted ? new DistrictingEngine(board, size, true, probability) : new DistrictingEngine(board, size, true);
+        this.streams = streams;
+        this.policy = policy;
+        this.scores = new CompactnessScores(size);
+        this.schedule = schedule;
+    }
+
+    /**
+     * Partitions the Squaretopia until the partition is valid.
+     * @param trialIndex Integer index of the trial, which picks the trial's random number generator
+     * @return TrialResult of the valid partition along with its compactness scores (LW RE SB PP) and the log probability of the accepted attempt's search
+     */
+    @Override
+    public TrialResult sample (int trialIndex) {
+        RandomGenerator random = streams.forTrial(trialIndex); // every retry of this trial draws from the trial's own generator
+        engine.metrics().trialStarted();
+        for(int attempt = 0; ; attempt++) {
+            engine.startAttempt(schedule.budget(attempt));
+            board.reset();
+            if(engine.completeMap(policy, random)) {
+                TrialResult result = new TrialResult(trialIndex, size, size, board.districtNumbers(), board.calculateCompactnessScores(scores).toArray(),
+                                                     engine.logProposal());
+                engine.metrics().trialAccepted(trialIndex);
+                return result;
+            }
+            engine.metrics().mapRejected();
+        }
+    }
+
+    /**
+     * @return SearchMetrics of this sampler's engine, which also count its rejected maps and time its accepted trials
+     */
+    @Override
+    public SearchMetrics metrics () {
+        return engine.metrics();
+    }
+
+}
@@ -0,0 +1,76 @@
+package partition;
+
+/**
+ * CellStack.java
+ * CellStack is a last-in first-out stack of Squaretopia cell indices (see SquaretopiaMatrix.index()).
+ * Its array only grows, so once it has reached its working size, pushing and popping never allocate.
+ */
+public final class CellStack {
+
+    private int[] cells; // the first size entries are the cells on this stack, with the top of the stack last
+    private int size;    // number of cells on this stack
+
+    /**
+     * Constructs an empty stack.
+     * @param initialCapacity Integer number of cells this stack can hold before its array has to grow
+     * @return void
+     */
+    public CellStack(int initialCapacity) {
+        this.cells = new int[Math.max(initialCapacity, 4)];
+        this.size = 0;
+    }
+
+    /**
+     * @return Integer number of cells on this stack
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Boolean value for the statement: This stack contains no cells.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Puts a cell on top of this stack.
+     * @param cell Integer index of the cell we will push
+     * @return void
+     */
+    public void push(int cell) {
+        if(size == cells.length) {
+            int[] biggerCells = new int[cells.length * 2];
+            System.arraycopy(cells, 0, biggerCells, 0, size);
+            cells = biggerCells;
+        }
+        cells[size++] = cell;
+    }
+
+    /**
+     * Takes the cell on top of this stack off of it.
+     * NOTE: This stack must not be empty.
+     * @return Integer index of the cell that was on top of this stack
+     */
+    public int pop() {
+        return cells[--size];
+    }
+
+    /**
+     * @param position Integer position on this stack, where 0 is the bottom and size() - 1 is the top
+     * @return Integer index of the cell at that position
+     */
+    public int get(int position) {
+        return cells[position];
+    }
+
+    /**
+     * Removes every cell from this stack.
+     * @return void
+     */
+    public void clear() {
+        size = 0;
+    }
+
+}
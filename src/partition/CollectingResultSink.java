@@ -0,0 +1,27 @@
+package partition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CollectingResultSink.java
+ * CollectingResultSink keeps every result in memory, in trial order, so that the results can be used without parsing any output.
+ */
+public final class CollectingResultSink implements ResultSink {
+
+    private final List<TrialResult> results = new ArrayList<>(); // results in the order they were received
+
+    @Override
+    public void accept(TrialResult result) {
+        results.add(result);
+    }
+
+    /**
+     * @return List<TrialResult> (unmodifiable) of every result received so far, in the order they were received
+     */
+    public List<TrialResult> results() {
+        return Collections.unmodifiableList(results);
+    }
+
+}
@@ -0,0 +1,116 @@
+package partition;
+
+/**
+ * CompactnessScores.java
+ * CompactnessScores holds the Length-Width, Reock, Schwartzberg and Polsby-Popper scores of a Squaretopia partition, along with the
+ * per-district bounding boxes and perimeters they were computed from. It is filled in by SquaretopiaMatrix.calculateCompactnessScores()
+ * and is meant to be reused for every partition a sampler scores, so scoring a partition allocates nothing.
+ */
+public final class CompactnessScores {
+
+    final int[] minRows;    // minRows[d - 1] is the smallest row of district d
+    final int[] maxRows;    // maxRows[d - 1] is the largest row of district d
+    final int[] minCols;    // minCols[d - 1] is the smallest column of district d
+    final int[] maxCols;    // maxCols[d - 1] is the largest column of district d
+    final int[] perimeters; // perimeters[d - 1] is the perimeter of district d
+
+    double lengthWidth;     // Length-Width score (unrounded) of the partition
+    double reock;           // Reock score (unrounded) of the partition
+    double schwartzberg;    // Schwartzberg score (unrounded) of the partition
+    double polsbyPopper;    // Polsby-Popper score (unrounded) of the partition
+
+    /**
+     * Constructs empty scores for partitions with a given number of districts.
+     * @param numOfDistricts Integer number of districts in each partition (n)
+     * @return void
+     */
+    public CompactnessScores(int numOfDistricts) {
+        this.minRows = new int[numOfDistricts];
+        this.maxRows = new int[numOfDistricts];
+        this.minCols = new int[numOfDistricts];
+        this.maxCols = new int[numOfDistricts];
+        this.perimeters = new int[numOfDistricts];
+    }
+
+    // computes the four scores from the bounding boxes and perimeters, which the caller has filled in (each district has n cells)
+    CompactnessScores computeScores() {
+        int numOfDistricts = perimeters.length;
+        double n = numOfDistricts;
+        double areaOfADistrict = numOfDistricts;
+        double lengthWidthTotal = 0;
+        double reockTotal = 0;
+        double schwartzbergTotal = 0;
+        double polsbyPopperTotal = 0;
+        for (int d = 0; d < numOfDistricts; d++) {
+            double length = maxRows[d] - minRows[d] + 1; // add one to count properly
+            double width = maxCols[d] - minCols[d] + 1;
+            if (length < width) {
+                lengthWidthTotal += length / width;
+                reockTotal += n / (width * width);
+            } else {
+                lengthWidthTotal += width / length;
+                reockTotal += n / (length * length);
+            }
+            double perimeter = perimeters[d];
+            schwartzbergTotal += (4 * Math.sqrt(areaOfADistrict)) / perimeter;
+            polsbyPopperTotal += areaOfADistrict / Math.pow(perimeter / 4, 2);
+        }
+        lengthWidth = lengthWidthTotal / n;
+        reock = reockTotal / n;
+        schwartzberg = schwartzbergTotal / n;
+        polsbyPopper = polsbyPopperTotal / n;
+        return this;
+    }
+
+    /**
+     * @return Integer number of districts in each partition
+     */
+    public int numberOfDistricts() {
+        return perimeters.length;
+    }
+
+    /**
+     * @return double Length-Width compactness score (unrounded) of the partition
+     */
+    public double lengthWidth() {
+        return lengthWidth;
+    }
+
+    /**
+     * @return double Reock compactness score (unrounded) of the partition
+     */
+    public double reock() {
+        return reock;
+    }
+
+    /**
+     * @return double Schwartzberg compactness score (unrounded) of the partition
+     */
+    public double schwartzberg() {
+        return schwartzberg;
+    }
+
+    /**
+     * @return double Polsby-Popper compactness score (unrounded) of the partition
+     */
+    public double polsbyPopper() {
+        return polsbyPopper;
+    }
+
+    /**
+     * @param districtNumber Integer number of some district, where 1 <= districtNumber <= numberOfDistricts()
+     * @return Integer perimeter of that district
+     */
+    public int perimeter(int districtNumber) {
+        return perimeters[districtNumber - 1];
+    }
+
+    /**
+     * Copies the scores into a new array, in the order the Partitioners print them.
+     * @return double[] containing the Length-Width, Reock, Schwartzberg and Polsby-Popper scores (LW RE SB PP)
+     */
+    public double[] toArray() {
+        return new double[] {lengthWidth, reock, schwartzberg, polsbyPopper};
+    }
+
+}
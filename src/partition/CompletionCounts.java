@@ -0,0 +1,207 @@
+package partition;
+
+import java.util.Arrays;
+
+/**
+ * CompletionCounts.java
+ * CompletionCounts knows, for every frontier state that deciding the first k cells of an n by n Squaretopia can lead to, the number of
+ * ways to decide the remaining cells that end in a partition into n contiguous districts of n cells (see FrontierStates). The counts are
+ * memoised in one open-addressing table per layer, keyed by the packed frontier state, and filled in by a depth-first search that only
+ * ever visits the states a partition can actually reach, so each state is counted once no matter how many paths lead to it.
+ * With these counts, UniformPartitioner picks each next choice with probability (completions of the child) / (completions of the
+ * state), which makes every partition exactly equally likely and never needs to backtrack or reject.
+ * NOTE: The tables grow with the number of frontier states (about 20 million for n = 7), so they are limited by a memory budget, and
+ * the constructor throws an IllegalStateException when the budget would be exceeded. Once constructed, the counts never change, so
+ * one instance can be shared by every worker of a ParallelTrialRunner.
+ */
+public final class CompletionCounts {
+
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;  // bytes per slot of a table: the state and its count
+    private static final int INITIAL_CAPACITY = 16;         // number of slots of a new table (a power of two)
+
+    private final int n;                    // Squaretopia size (n)
+    private final int cellCount;            // number of cells (n * n)
+    private final long memoryBudget;        // largest number of bytes the tables may take up
+    private final StateTable[] tables;      // tables[k] maps every reachable frontier state before cell k is decided to its number of completions
+    private final FrontierStates frontier;  // decides the cells while the counts are being filled in
+    private long memoryUsed;                // number of bytes the tables take up
+
+    /**
+     * Counts the completions of every reachable frontier state of an n by n Squaretopia, with half of the JVM's maximum heap as the
+     * memory budget.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= FrontierStates.MAX_SIZE
+     * @return void
+     */
+    public CompletionCounts(int size) {
+        this(size, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /**
+     * Counts the completions of every reachable frontier state of an n by n Squaretopia.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= FrontierStates.MAX_SIZE
+     * @param memoryBudget Long number of bytes the count tables may take up
+     * @return void
+     */
+    public CompletionCounts(int size, long memoryBudget) {
+        this.frontier = new FrontierStates(size);
+        this.n = size;
+        this.cellCount = size * size;
+        this.memoryBudget = memoryBudget;
+        this.tables = new StateTable[cellCount + 1];
+        for (int k = 0; k <= cellCount; k++) {
+            tables[k] = new StateTable();
+            memoryUsed += (long) INITIAL_CAPACITY * ENTRY_BYTES;
+        }
+        checkBudget();
+        countCompletions(0, FrontierStates.EMPTY);
+    }
+
+    /**
+     * @return Integer Squaretopia size (n)
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return Long number of partitions of the n by n Squaretopia into n contiguous districts of n cells
+     */
+    public long count() {
+        return tables[0].get(FrontierStates.EMPTY);
+    }
+
+    /**
+     * @return Integer number of frontier states over all layers, which is what the memory of the tables grows with
+     */
+    public int numberOfStates() {
+        int total = 0;
+        for (StateTable table : tables) {
+            total += table.size;
+        }
+        return total;
+    }
+
+    /**
+     * @return Long number of bytes the count tables take up, which is at most the memory budget
+     */
+    public long memoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * @param k Integer index of the next cell to decide, where 0 <= k <= n * n
+     * @param state Long frontier state before cell k is decided
+     * @return Long number of ways to decide cells k to n * n - 1 from the state that end in a partition (0 if no partition reaches the state)
+     */
+    long completions(int k, long state) {
+        long count = tables[k].get(state);
+        return count < 0 ? 0 : count;
+    }
+
+    // counts the completions of a state by adding up those of its children, and memoises the count in the state's layer
+    private long countCompletions(int k, long state) {
+        StateTable table = tables[k];
+        long count = table.get(state);
+        if(count >= 0) {
+            return count;
+        }
+        if(k == cellCount) {
+            count = 1; // transition() only finishes the last cell when every district is whole
+        } else {
+            count = 0;
+            for (int choice = 0; choice < FrontierStates.CHOICES; choice++) {
+                long child = frontier.transition(k, state, choice); // decodes the state again, since the recursion reuses the scratch frontier
+                if(child >= 0) {
+                    count += countCompletions(k + 1, child);
+                }
+            }
+        }
+        if(table.isFull()) {
+            memoryUsed += (long) table.capacity() * ENTRY_BYTES; // the table doubles
+            checkBudget();
+            table.grow();
+        }
+        table.put(state, count);
+        return count;
+    }
+
+    // throws an IllegalStateException when the tables take up more than the memory budget
+    private void checkBudget() {
+        if(memoryUsed > memoryBudget) {
+            throw new IllegalStateException("the completion counts of a " + n + " by " + n + " Squaretopia need more than the memory budget of "
+                + memoryBudget + " bytes");
+        }
+    }
+
+    /**
+     * StateTable maps frontier states to their numbers of completions with open addressing and linear probing. Frontier states are never
+     * negative (see FrontierStates.encode()), so an empty slot holds the key -1.
+     */
+    private static final class StateTable {
+
+        private long[] keys = filledKeys(INITIAL_CAPACITY); // keys[i] is the state in slot i (-1 if the slot is empty)
+        private long[] values = new long[INITIAL_CAPACITY]; // values[i] is the number of completions of keys[i]
+        private int size;                                   // number of states in the table
+
+        // returns the number of completions of a state (-1 if the state is not in the table)
+        long get(long state) {
+            int mask = keys.length - 1;
+            for (int i = slot(state, mask); ; i = (i + 1) & mask) {
+                if(keys[i] == state) {
+                    return values[i];
+                }
+                if(keys[i] == -1) {
+                    return -1;
+                }
+            }
+        }
+
+        // adds a state that is not in the table yet
+        void put(long state, long count) {
+            int mask = keys.length - 1;
+            int i = slot(state, mask);
+            while(keys[i] != -1) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = state;
+            values[i] = count;
+            size++;
+        }
+
+        // determines if one more state would push the table past a load factor of 3/4
+        boolean isFull() {
+            return 4 * (size + 1) > 3 * keys.length;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        // doubles the number of slots and puts every state back
+        void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = filledKeys(2 * oldKeys.length);
+            values = new long[2 * oldKeys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if(oldKeys[i] != -1) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        // spreads the bits of a state over the slots (Fibonacci hashing)
+        private static int slot(long state, int mask) {
+            return (int) ((state * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+
+        private static long[] filledKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package partition;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * DistrictingBoard.java
+ * DistrictingBoard is the Squaretopia as a DistrictingEngine sees it: cells that are free or claimed, the transitions (the free cells
+ * next to the district being grown that the search has not tried yet), and the checks that tell whether the free cells can still be
+ * districted. The engine keeps the search itself (its decision stack, weighting factor, work budget, metrics and log proposal), so
+ * every board is searched the same way, and a board only decides how its cells are stored.
+ * Cells are numbered from 0 to cellCount() - 1, and the neighbors of a cell are numbered by direction (1 is above, 2 is right, 3 is
+ * below, 4 is left), so a neighbor mask has bit direction - 1 set for each neighbor in it.
+ * NOTE: A board is owned by one engine and changed in place, so it must only ever be used by one thread at a time.
+ */
+public interface DistrictingBoard {
+
+    /**
+     * @return Integer number of cell indices of the board (every cell index is less than this)
+     */
+    int cellCount();
+
+    /**
+     * @return Integer number of cells that belong to no district
+     */
+    int freeCellCount();
+
+    /**
+     * @param random RandomGenerator that we will draw from
+     * @return Integer index of a free cell chosen uniformly at random (there must be at least one)
+     */
+    int randomFreeCell(RandomGenerator random);
+
+    /**
+     * NOTE: The board decides which dead end comes first when there are several, so boards that order them differently do not
+     * make the same claims from the same random draws.
+     * @return Integer index of a free cell with exactly one free neighbor (-1 if there is none)
+     */
+    int deadEnd();
+
+    /**
+     * @param cell Integer index of some cell
+     * @return Integer neighbor mask of the free neighbors of the cell
+     */
+    int freeNeighborMask(int cell);
+
+    /**
+     * @param cell Integer index of some cell
+     * @param direction Integer direction of the neighbor (1 is above, 2 is right, 3 is below, 4 is left)
+     * @return Integer index of the neighbor, or of a cell that is never free or a transition (-1 if the board has no cell there)
+     */
+    int neighbor(int cell, int direction);
+
+    /**
+     * Takes a free cell out of the free cells and assigns it to the district that is being grown.
+     * @param cell Integer index of a free cell
+     * @return void
+     */
+    void claim(int cell);
+
+    /**
+     * Returns a claimed cell to the free cells.
+     * @param cell Integer index of a claimed cell
+     * @return void
+     */
+    void free(int cell);
+
+    /**
+     * Determines if a claim can still lead to a valid map (see SquaretopiaMatrix.claimKeepsMapValid()).
+     * @param claimedCell Integer index of the cell that was just claimed
+     * @param districtSize Integer number of cells in each district (n)
+     * @param cellsStillNeeded Integer number of cells the claimed cell's district still needs to be completed
+     * @return Boolean value for the statement: This claim may still lead to a valid map.
+     */
+    boolean claimKeepsMapValid(int claimedCell, int districtSize, int cellsStillNeeded);
+
+    /**
+     * @return Boolean value for the statement: Every group of free cells can still be split into districts (see SquaretopiaMatrix.validMap()).
+     */
+    boolean validMap();
+
+    /**
+     * @return Integer number of transitions
+     */
+    int transitionCount();
+
+    /**
+     * @param cell Integer index of some cell
+     * @return Boolean value for the statement: The cell is a transition.
+     */
+    boolean isTransition(int cell);
+
+    /**
+     * @param cell Integer index of a free cell that is not a transition
+     * @return void
+     */
+    void addTransition(int cell);
+
+    /**
+     * @param cell Integer index of a transition
+     * @return void
+     */
+    void removeTransition(int cell);
+
+    /**
+     * Removes every transition, so that the next district starts from scratch.
+     * @return void
+     */
+    void clearTransitions();
+
+    /**
+     * @param random RandomGenerator that we will draw from
+     * @return Integer index of a transition chosen uniformly at random (there must be at least one)
+     */
+    int randomTransition(RandomGenerator random);
+
+    /**
+     * @param cell Integer index of a transition that must not be chosen
+     * @param random RandomGenerator that we will draw from
+     * @return Integer index of one of the other transitions chosen uniformly at random (there must be at least two transitions)
+     */
+    int randomTransitionOtherThan(int cell, RandomGenerator random);
+
+    /**
+     * NOTE: As with deadEnd(), the board decides which isolated transition comes first when there are several.
+     * @return Integer index of a transition with no free neighbors (-1 if there is none)
+     */
+    int isolatedTransition();
+
+}
@@ -0,0 +1,420 @@
+package partition;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * DistrictingEngine.java
+ * DistrictingEngine grows one district at a time in a Squaretopia with a backtracking search. It is shared by every Partitioner and
+ * districter class, which only differ in how large their districts are, whether a completed district must leave a valid map behind,
+ * and whether the next cell is chosen with a weighting factor.
+ * The engine searches a DistrictingBoard, which only stores the free cells and transitions: MatrixBoard for a SquaretopiaMatrix of
+ * any size, and LongBitboard for the long bitmasks of BitboardPartitioner.
+ * The search keeps an explicit decision stack instead of recursing once per claimed cell. Each depth of the stack only remembers the
+ * cell that was claimed, the transitions that claim added and how many cells had been tried before it, so the memory footprint per
+ * depth is constant and the district size is not limited by the thread's stack size.
+ * The engine also remembers the cells of every district it has grown in the current map, so that the last few districts can be
+ * returned and grown again when a later district fails (see BacktrackPolicy).
+ * Every engine counts what its search does in its own SearchMetrics (see metrics()). An attempt at a sample may also be given a work
+ * budget (see startAttempt() and RestartSchedule), after which the search gives up and leaves the map as it was.
+ * Every random draw of an attempt is also scored with the probability it had of coming out the way it did, and the logs of these
+ * probabilities are added up (see logProposal()), so that each sample carries the probability of the search that produced it.
+ * NOTE: An engine is reused for every district of every trial of the sampler that owns it, so it allocates nothing while searching.
+ */
+public final class DistrictingEngine {
+
+    private final DistrictingBoard board;        // cells that the engine claims and returns
+    private final int districtSize;              // number of cells in each district
+    private final boolean validateMaps;          // a completed district must leave a valid map behind (see SquaretopiaMatrix.validMap())
+    private final boolean weighted;              // the next cell is chosen with the weighting factor probability
+    private final double probability;            // weighting factor probability, where 0 <= probability <= 100 (only used when weighted)
+
+    private int districtCells;                    // number of cells of the district we are growing
+    private final CellStack triedCells;           // cells taken out of the board's transitions by some depth of the search, in the order they were tried
+
+    private final int[] claimedCells;            // claimedCells[d] is the cell claimed at depth d (depth 0 is the first cell of the district)
+    private final int[] addedTransitions;        // addedTransitions[d] is the neighbor mask of the transitions that claimedCells[d] added
+    private final int[] triedCellsMarks;         // triedCells above triedCellsMarks[d] were tried by depth d
+    private final int[] directions;              // directions[cell] is the direction of a transition relative to the cell that added it, -1 for a first cell (only used when weighted)
+    private final int[] savedDirections;         // savedDirections[4 * d + direction - 1] is the direction that depth d overwrote in that neighbor (only used when weighted)
+
+    private final CellStack districtHistory;      // cells of the districts grown in the current map, one district after another
+
+    private final SearchMetrics metrics;          // counters of this engine's search
+    private long claimsLeft;                      // number of cells the current attempt may still claim
+    private boolean attemptCutOff;                // the current attempt ran out of claims
+    private double logProposal;                   // log of the probability of every random draw of the current attempt so far
+
+    /**
+     * Constructs an engine for districts that are chosen uniformly among the transitions.
+     * @param board DistrictingBoard whose cells the engine claims (see MatrixBoard and LongBitboard)
+     * @param districtSize Integer number of cells in each district
+     * @param validateMaps Boolean value for the statement: A completed district must leave a valid map behind.
+     * @return void
+     */
+    public DistrictingEngine(DistrictingBoard board, int districtSize, boolean validateMaps) {
+        this(board, districtSize, validateMaps, false, 0);
+    }
+
+    /**
+     * Constructs an engine for districts that are grown with a weighting factor probability.
+     * NOTE: The weighting factor probability argument must be greater than or equal to 0 AND less than or equal to 100.
+     * @param board DistrictingBoard whose cells the engine claims (see MatrixBoard and LongBitboard)
+     * @param districtSize Integer number of cells in each district
+     * @param validateMaps Boolean value for the statement: A completed district must leave a valid map behind.
+     * @param probability Double value for our weighting factor probability
+     * @return void
+     */
+    public DistrictingEngine(DistrictingBoard board, int districtSize, boolean validateMaps, double probability) {
+        this(board, districtSize, validateMaps, true, probability);
+    }
+
+    private DistrictingEngine(DistrictingBoard board, int districtSize, boolean validateMaps, boolean weighted, double probability) {
+        int cellCount = board.cellCount();
+        this.board = board;
+        this.districtSize = districtSize;
+        this.validateMaps = validateMaps;
+        this.weighted = weighted;
+        this.probability = probability;
+        this.districtCells = 0;
+        this.triedCells = new CellStack(cellCount);
+        this.claimedCells = new int[districtSize];
+        this.addedTransitions = new int[districtSize];
+        this.triedCellsMarks = new int[districtSize];
+        this.directions = new int[weighted ? cellCount : 0];
+        this.savedDirections = new int[weighted ? 4 * districtSize : 0];
+        this.districtHistory = new CellStack(cellCount);
+        this.metrics = new SearchMetrics();
+        this.claimsLeft = Long.MAX_VALUE;
+        this.attemptCutOff = false;
+    }
+
+    /**
+     * Starts a new attempt at a sample, which may claim a limited number of cells before the search gives up (see RestartSchedule).
+     * @param budget Long number of cells the attempt may claim, including claims that are undone again (Long.MAX_VALUE for no limit)
+     * @return void
+     */
+    public void startAttempt(long budget) {
+        claimsLeft = budget;
+        attemptCutOff = false;
+        logProposal = 0;
+    }
+
+    /**
+     * @return Boolean value for the statement: The current attempt ran out of claims, so its last district failed without being searched to the end.
+     */
+    public boolean attemptCutOff() {
+        return attemptCutOff;
+    }
+
+    /**
+     * Gives the log of the probability that the current attempt made exactly the random draws it made so far: a first cell drawn
+     * among f free cells adds log(1 / f), a transition drawn among t transitions adds log(1 / t) (or, when the engine is weighted,
+     * log(w) for the next sequential cell and log((1 - w) / (t - 1)) for any other cell), and the dead ends and isolated cells that are
+     * claimed without a draw add nothing. Draws that are later undone by backtracking, whether within a district or by returning
+     * whole districts (see BacktrackPolicy), stay in the sum, because they are part of how the sample came about.
+     * NOTE: The sum only covers the current attempt. Without a work budget (RestartSchedule.NONE) every attempt searches the same
+     * way, so the rejected attempts scale every sample by the same factor, which cancels out of self-normalized weights. Under a
+     * budget, a search is only accepted if it fits the budget of its attempt, so that factor depends on the attempt and on how many
+     * claims the search used, and the weights of samples from different attempts cannot be compared.
+     * NOTE: This is the probability of the search, not of the map: a map that several searches lead to (with its cells claimed in
+     * another order, its districts grown in another order, or other dead branches tried on the way) has one probability for each of
+     * them, and the map's own probability is their sum, which the engine cannot know. Weighting samples by exp(-logProposal()) is
+     * therefore exact over searches, but not over maps: a map that more searches lead to is still drawn more often after weighting.
+     * @return double log proposal probability of the current attempt (0 right after startAttempt())
+     */
+    public double logProposal() {
+        return logProposal;
+    }
+
+    /**
+     * @return SearchMetrics that count what this engine's search does
+     */
+    public SearchMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Integer number of districts grown in the current map that have not been returned
+     */
+    public int districtsGrown() {
+        return districtHistory.size() / districtSize;
+    }
+
+    /**
+     * Returns the cells of the most recently grown districts, so that they can be grown again.
+     * @param numOfDistricts Integer number of districts to return (at most districtsGrown())
+     * @return void
+     */
+    public void returnDistricts(int numOfDistricts) {
+        int remainingCells = districtHistory.size() - numOfDistricts * districtSize;
+        while(districtHistory.size() > remainingCells) {
+            freeCell(districtHistory.pop());
+        }
+    }
+
+    /**
+     * Partitions a map that has no districts yet, backtracking into earlier districts as the policy allows when a district fails.
+     * NOTE: The board must have been emptied before this method is called (see SquaretopiaMatrix.reset() and LongBitboard.reset()).
+     * @param policy BacktrackPolicy that decides what happens when a district fails
+     * @param random RandomGenerator that we will draw from
+     * @return Boolean value for the statement: Every free cell was districted.
+     */
+    public boolean completeMap(BacktrackPolicy policy, RandomGenerator random) {
+        int retries = 0;
+        districtHistory.clear(); // forget the districts of the previous map
+        while(board.freeCellCount() > 0) {
+            if(growDistrict(firstCell(random), random) == false) {
+                if(attemptCutOff || policy.shouldBacktrack(retries) == false) { // an attempt that ran out of claims is restarted, not backtracked into
+                    return false;
+                }
+                returnDistricts(Math.min(policy.districtsToResample(), districtsGrown()));
+                retries++;
+                metrics.backtracked();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chooses the first cell of the next district: a free cell with one free neighbor if there is one, otherwise a free cell chosen
+     * uniformly at random (which is added to logProposal()).
+     * @param random RandomGenerator that we will draw from
+     * @return Integer index of the chosen cell
+     */
+    public int firstCell(RandomGenerator random) {
+        int cell = board.deadEnd();
+        if(cell == -1) {
+            logProposal -= Math.log(board.freeCellCount());
+            cell = board.randomFreeCell(random);
+        }
+        return cell;
+    }
+
+    /**
+     * Claims a first cell and grows a district of districtSize cells around it.
+     * The search claims a transition at each depth. When a depth runs out of transitions to try, its tried cells are handed back to
+     * the transitions and the search returns to the previous depth, which returns its claimed cell and tries another transition.
+     * NOTE: If no district can be grown, or the attempt runs out of claims (see startAttempt()), the free cells of the board are left
+     * as they were before this method was called.
+     * @param firstCell Integer index of the free cell that the district starts from
+     * @param random RandomGenerator that we will draw from
+     * @return Boolean value for the statement: A district was grown and claimed on the board.
+     */
+    public boolean growDistrict(int firstCell, RandomGenerator random) {
+        claimer(firstCell);
+        if(validateMaps && keepsMapValid(firstCell) == false) {
+            returner(firstCell);
+            metrics.districtFailed();
+            return false;
+        }
+        if(weighted) {
+            directions[firstCell] = -1; // the first cell of a district has no parent
+        }
+        int depth = 0;
+        openDepth(depth, firstCell, freeNeighborsNotInTransitions(firstCell));
+
+        while(true) {
+            if(claimsLeft <= 0 && districtCells < districtSize) { // out of budget: return every claim of this district and give up
+                abandonDistrict(depth);
+                return false;
+            }
+            boolean depthFailed = false;
+            if(districtCells == districtSize) {
+                if(validateMaps == false || validMap()) {
+                    for(int d = 0; d < districtSize; d++) {
+                        districtHistory.push(claimedCells[d]);
+                    }
+                    finishDistrict();
+                    return true;
+                }
+                depthFailed = true; // this depth has not tried any cells yet, so there is nothing to hand back
+            }
+            while(depthFailed == false) {
+                if(board.transitionCount() == 0) {
+                    while(triedCells.size() > triedCellsMarks[depth]) { // hand the previous depth's transitions back
+                        board.addTransition(triedCells.pop());
+                    }
+                    depthFailed = true;
+                    break;
+                }
+                int nextCell = board.isolatedTransition();
+                if(nextCell == -1) {
+                    nextCell = randomTransition(claimedCells[depth], random);
+                }
+                claimer(nextCell);
+                board.removeTransition(nextCell);
+                triedCells.push(nextCell);
+                if(validateMaps && keepsMapValid(nextCell) == false) { // prune: this claim cut off free cells that can no longer be districted
+                    returner(nextCell);
+                    continue;
+                }
+                depth++;
+                openDepth(depth, nextCell, freeNeighborsNotInTransitions(nextCell));
+                break;
+            }
+            if(depthFailed) {
+                closeDepth(depth);
+                if(depth == 0) {
+                    finishDistrict();
+                    metrics.districtFailed();
+                    return false;
+                }
+                depth--;
+            }
+        }
+    }
+
+    // records the claim that opens a depth and adds the transitions it brings
+    private void openDepth(int depth, int claimedCell, int newTransitions) {
+        claimedCells[depth] = claimedCell;
+        addedTransitions[depth] = newTransitions;
+        triedCellsMarks[depth] = triedCells.size();
+        metrics.depthReached(depth);
+        if(weighted) {
+            recordDirections(depth, claimedCell, newTransitions);
+        }
+        addTransitions(claimedCell, newTransitions);
+    }
+
+    // undoes the claim that opened a depth
+    private void closeDepth(int depth) {
+        returner(claimedCells[depth]);
+        removeTransitions(claimedCells[depth], addedTransitions[depth]);
+        if(weighted) {
+            restoreDirections(depth);
+        }
+    }
+
+    // returns the claims of every open depth after the attempt ran out of claims (tried cells were already returned)
+    private void abandonDistrict(int depth) {
+        for(int d = depth; d >= 0; d--) {
+            returner(claimedCells[d]);
+        }
+        finishDistrict();
+        attemptCutOff = true;
+        metrics.attemptCutOff();
+    }
+
+    // empties the search state so that the next district starts from scratch
+    private void finishDistrict() {
+        districtCells = 0;
+        board.clearTransitions();
+        triedCells.clear();
+    }
+
+    // chooses a transition to claim next, with the weighting factor if this engine is weighted, and adds the log of the probability
+    // of the chosen cell to logProposal
+    // w, where 0 <= w <= 100, is the minimum probability of selecting the next sequential cell (the cell that follows if we continue in the same direction)
+    private int randomTransition(int recentlyClaimedCell, RandomGenerator random) {
+        int count = board.transitionCount();
+        if(weighted == false) {
+            logProposal -= Math.log(count);
+            return board.randomTransition(random);
+        }
+        double w = probability / 100;
+        int targetCell = nextSequentialCell(recentlyClaimedCell); // cell that will be assigned a w% probability of being chosen
+        if(targetCell == -1 || board.isTransition(targetCell) == false) { // each cell has an equal probability of being chosen if the targetCell is not a transition
+            logProposal -= Math.log(count);
+            return board.randomTransition(random);
+        }
+        if(count == 1) {
+            return targetCell;
+        }
+        if(random.nextDouble() < w) {
+            logProposal += Math.log(w);
+            return targetCell;
+        }
+        // each of the other cells is chosen with probability (1 - w) / (count - 1)
+        logProposal += Math.log((1 - w) / (count - 1));
+        return board.randomTransitionOtherThan(targetCell, random);
+    }
+
+    // determines the next cell in some direction given a current cell and the current cell's direction (returns -1 if the current cell has no direction)
+    private int nextSequentialCell(int cell) {
+        int direction = directions[cell];
+        if(direction == -1) {
+            return -1;
+        }
+        return board.neighbor(cell, direction);
+    }
+
+    // records the direction of each newly added transition relative to the cell whose neighbor it is
+    // a cell that an earlier depth tried and took out of the transitions can be added again here, so the direction it had is saved for closeDepth
+    private void recordDirections(int depth, int parentCell, int newTransitions) {
+        for(int mask = newTransitions; mask != 0; mask &= mask - 1) {
+            int direction = Integer.numberOfTrailingZeros(mask) + 1;
+            int neighbor = board.neighbor(parentCell, direction);
+            savedDirections[4 * depth + direction - 1] = directions[neighbor];
+            directions[neighbor] = direction;
+        }
+    }
+
+    // gives the transitions that a depth added back the directions they had before it
+    private void restoreDirections(int depth) {
+        for(int mask = addedTransitions[depth]; mask != 0; mask &= mask - 1) {
+            int direction = Integer.numberOfTrailingZeros(mask) + 1;
+            directions[board.neighbor(claimedCells[depth], direction)] = savedDirections[4 * depth + direction - 1];
+        }
+    }
+
+    // determines the free neighbors of a claimed cell that are not already transitions (as a neighbor mask)
+    private int freeNeighborsNotInTransitions(int claimedCell) {
+        int newTransitions = 0;
+        for(int mask = board.freeNeighborMask(claimedCell); mask != 0; mask &= mask - 1) {
+            int direction = Integer.numberOfTrailingZeros(mask) + 1;
+            if(board.isTransition(board.neighbor(claimedCell, direction)) == false) {
+                newTransitions |= 1 << (direction - 1);
+            }
+        }
+        return newTransitions;
+    }
+
+    // adds the neighbors in a neighbor mask of some cell to the transitions
+    private void addTransitions(int cell, int newTransitions) {
+        for(int mask = newTransitions; mask != 0; mask &= mask - 1) {
+            board.addTransition(board.neighbor(cell, Integer.numberOfTrailingZeros(mask) + 1));
+        }
+    }
+
+    // removes the neighbors in a neighbor mask of some cell from the transitions
+    private void removeTransitions(int cell, int oldTransitions) {
+        for(int mask = oldTransitions; mask != 0; mask &= mask - 1) {
+            board.removeTransition(board.neighbor(cell, Integer.numberOfTrailingZeros(mask) + 1));
+        }
+    }
+
+    // determines if a claimed cell can still lead to a valid map (see DistrictingBoard.claimKeepsMapValid())
+    private boolean keepsMapValid(int claimedCell) {
+        boolean valid = board.claimKeepsMapValid(claimedCell, districtSize, districtSize - districtCells);
+        metrics.validityChecked(valid);
+        return valid;
+    }
+
+    // determines if a completed district leaves a valid map behind (see DistrictingBoard.validMap())
+    private boolean validMap() {
+        boolean valid = board.validMap();
+        metrics.validMapChecked(valid);
+        return valid;
+    }
+
+    // takes care of everything when claiming a free cell
+    private void claimer(int claimedCell) {
+        board.claim(claimedCell);
+        districtCells++;
+        claimsLeft--;
+        metrics.cellClaimed();
+    }
+
+    // takes care of everything when returning an already claimed cell of the district we are growing
+    private void returner(int returnedCell) {
+        freeCell(returnedCell);
+        districtCells--;
+    }
+
+    // takes care of everything when freeing a cell, whether it belongs to the district we are growing or to a completed district
+    private void freeCell(int cell) {
+        board.free(cell);
+        metrics.cellReturned();
+    }
+
+}
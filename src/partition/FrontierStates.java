@@ -0,0 +1,274 @@
+package partition;
+
+import java.util.Arrays;
+
+/**
+ * FrontierStates.java
+ * FrontierStates decides the cells of an n by n Squaretopia one at a time, row by row, on packed frontier states. Each cell either
+ * starts a new component, or joins the component of the cell above it, of the cell to its left, or of both (which merges the two).
+ * Only the last n decided cells (the frontier) can still touch an undecided cell, so a frontier state holds everything the rest of the
+ * partition depends on: the component of each frontier cell, the size of each component, and the pairs of components that must never
+ * merge because two of their cells are neighbors that were put in different districts. It is shared by PartitionEnumerator, which
+ * builds every state of every layer, and CompletionCounts, which counts the completions of each state for UniformPartitioner.
+ * NOTE: A frontier state is packed into a long, which limits the states to n <= MAX_SIZE. The decoded frontier is kept in scratch
+ * arrays, so an instance is not thread-safe.
+ */
+final class FrontierStates {
+
+    static final int MAX_SIZE = 7;              // largest n whose frontier states fit in a long (see encode())
+    static final int JOIN_UP = 1;               // choice bit: the cell is in the same district as the cell above it
+    static final int JOIN_LEFT = 2;             // choice bit: the cell is in the same district as the cell to its left
+    static final int CHOICES = 4;               // number of choices for each cell (no join, up, left, both)
+    static final long EMPTY = 0;                // frontier state before the first cell is decided
+    static final long FINISHED = 0;             // frontier state after the last cell is decided, when every district is whole
+
+    private static final int LABEL_BITS = 3;    // bits per component label and per component size in a frontier state
+    private static final int LABEL_MASK = (1 << LABEL_BITS) - 1;
+
+    private final int n;                        // Squaretopia size (n)
+    private final int cellCount;                // number of cells (n * n)
+    private final int[][] pairBits;             // pairBits[a][b] is the bit of the frontier state that is set when components a and b must never merge
+
+    private final int[] slotLabels;             // scratch frontier: slotLabels[j] is the component of the frontier cell in column j
+    private final int[] sizes;                  // scratch frontier: sizes[label] is the number of cells of the component
+    private final int[] apart;                  // scratch frontier: bit b of apart[label] is set when the component must never merge with component b
+    private final int[] relabel;                // scratch map from the labels of a frontier to its canonical labels
+    private int labelCount;                     // scratch frontier: number of labels in use
+
+    /**
+     * Constructs the frontier states of an n by n Squaretopia.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= MAX_SIZE
+     * @return void
+     */
+    FrontierStates(int size) {
+        if(size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_SIZE + ", not " + size);
+        }
+        this.n = size;
+        this.cellCount = size * size;
+        this.slotLabels = new int[n];
+        this.sizes = new int[n + 1];
+        this.apart = new int[n + 1];
+        this.relabel = new int[n + 1];
+        this.pairBits = new int[n][n];
+        int bit = 2 * LABEL_BITS * n;
+        for (int a = 0; a < n; a++) {
+            for (int b = a + 1; b < n; b++) {
+                pairBits[a][b] = bit;
+                pairBits[b][a] = bit;
+                bit++;
+            }
+        }
+    }
+
+    /**
+     * @return Integer Squaretopia size (n)
+     */
+    int size() {
+        return n;
+    }
+
+    /**
+     * Decides cell k of a frontier state.
+     * @param k Integer index of the cell, row * n + column
+     * @param state Long frontier state before cell k is decided (see encode())
+     * @param choice Integer choice for the cell: the sum of JOIN_UP if it joins the cell above it and JOIN_LEFT if it joins the cell to its left
+     * @return Long frontier state after cell k is decided, FINISHED after the last cell (-1 if the choice does not lead to a partition)
+     */
+    long transition(int k, long state, int choice) {
+        int row = k / n;
+        int col = k % n;
+        boolean hasUp = row > 0;
+        boolean hasLeft = col > 0;
+        if(((choice & JOIN_UP) != 0 && hasUp == false) || ((choice & JOIN_LEFT) != 0 && hasLeft == false)) {
+            return -1;
+        }
+        decode(k, state);
+        int up = hasUp ? slotLabels[col] : -1;
+        int left = hasLeft ? slotLabels[col - 1] : -1;
+        int label;
+        if(choice == 0) { // the cell starts a new component, which must stay apart from its neighbors
+            label = labelCount++;
+            sizes[label] = 1;
+            apart[label] = 0;
+            if(hasUp) {
+                keepApart(label, up);
+            }
+            if(hasLeft) {
+                keepApart(label, left);
+            }
+        } else if(choice == JOIN_UP || choice == JOIN_LEFT) {
+            label = choice == JOIN_UP ? up : left;
+            int other = choice == JOIN_UP ? left : up;
+            if(label == other || sizes[label] == n) { // the other neighbor is already in this district, so the cell must join it too
+                return -1;
+            }
+            sizes[label]++;
+            if(other >= 0) {
+                keepApart(label, other);
+            }
+        } else if(up == left) {
+            if(sizes[up] == n) {
+                return -1;
+            }
+            label = up;
+            sizes[up]++;
+        } else {
+            if((apart[up] & (1 << left)) != 0 || sizes[up] + sizes[left] + 1 > n) {
+                return -1;
+            }
+            label = up;
+            sizes[up] += sizes[left] + 1;
+            apart[up] |= apart[left];
+            for (int l = 0; l < labelCount; l++) {
+                if((apart[l] & (1 << left)) != 0) {
+                    apart[l] = (apart[l] & ~(1 << left)) | (1 << up);
+                }
+            }
+            for (int j = 0; j < n; j++) {
+                if(slotLabels[j] == left && slotExists(k, j)) {
+                    slotLabels[j] = up;
+                }
+            }
+        }
+        slotLabels[col] = label;
+        if(hasUp && up != label && isOnFrontier(k + 1, up) == false && sizes[up] != n) {
+            return -1; // the component of the cell above can no longer grow, so it must be a whole district
+        }
+        if(k == cellCount - 1) {
+            for (int j = 0; j < n; j++) {
+                if(sizes[slotLabels[j]] != n) {
+                    return -1;
+                }
+            }
+            return FINISHED;
+        }
+        return encode(k + 1);
+    }
+
+    // records that two components must never merge
+    private void keepApart(int a, int b) {
+        apart[a] |= 1 << b;
+        apart[b] |= 1 << a;
+    }
+
+    // determines if the frontier before cell k has a cell in column j (the first row is still being filled in)
+    boolean slotExists(int k, int j) {
+        return k >= n || j < k;
+    }
+
+    // determines if some frontier cell before cell k belongs to a component
+    private boolean isOnFrontier(int k, int label) {
+        for (int j = 0; j < n; j++) {
+            if(slotLabels[j] == label && slotExists(k, j)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unpacks a frontier state into slotLabels, sizes, apart and labelCount.
+     * @param k Integer index of the next cell to decide
+     * @param state Long frontier state before cell k is decided (see encode())
+     * @return void
+     */
+    private void decode(int k, long state) {
+        labelCount = 0;
+        for (int j = 0; j < n; j++) {
+            if(slotExists(k, j)) {
+                slotLabels[j] = (int) (state >>> (LABEL_BITS * j)) & LABEL_MASK;
+                labelCount = Math.max(labelCount, slotLabels[j] + 1);
+            } else {
+                slotLabels[j] = -1;
+            }
+        }
+        for (int l = 0; l < labelCount; l++) {
+            sizes[l] = ((int) (state >>> (LABEL_BITS * (n + l))) & LABEL_MASK) + 1;
+            apart[l] = 0;
+            for (int m = 0; m < labelCount; m++) {
+                if(m != l && (state & (1L << pairBits[l][m])) != 0) {
+                    apart[l] |= 1 << m;
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs slotLabels, sizes and apart into a frontier state. The components are relabeled in the order their first frontier cells
+     * appear, so that two frontiers that only differ in their labels are the same state. The state holds LABEL_BITS bits for the
+     * component of each frontier cell, LABEL_BITS bits for the size (minus one) of each component, and one bit for each pair of
+     * components that must never merge: 3n + 3n + n(n - 1)/2 bits, which is 63 for n = 7.
+     * @param k Integer index of the next cell to decide
+     * @return Long frontier state
+     */
+    private long encode(int k) {
+        Arrays.fill(relabel, -1);
+        int count = 0;
+        long state = 0;
+        for (int j = 0; j < n; j++) {
+            if(slotExists(k, j)) {
+                int label = slotLabels[j];
+                if(relabel[label] == -1) {
+                    relabel[label] = count++;
+                    state |= (long) (sizes[label] - 1) << (LABEL_BITS * (n + relabel[label]));
+                }
+                state |= (long) relabel[label] << (LABEL_BITS * j);
+            }
+        }
+        for (int l = 0; l < labelCount; l++) {
+            if(relabel[l] == -1) {
+                continue;
+            }
+            for (int mask = apart[l]; mask != 0; mask &= mask - 1) {
+                int m = Integer.numberOfTrailingZeros(mask);
+                if(relabel[m] != -1) {
+                    state |= 1L << pairBits[relabel[l]][relabel[m]];
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Rebuilds a partition from the choices made for its cells. Cells joined by a choice are put in the same district with a union-find,
+     * and the districts are numbered 1 to n in the order their first cells appear, row by row.
+     * @param choices Integer array where choices[k] is the choice made for cell k (see transition())
+     * @param n Integer Squaretopia size (n)
+     * @return int[] where entry row * n + column is the district of that cell
+     */
+    static int[] districtsOf(int[] choices, int n) {
+        int cellCount = n * n;
+        int[] parents = new int[cellCount];
+        for (int k = 0; k < cellCount; k++) {
+            parents[k] = k;
+            if((choices[k] & JOIN_UP) != 0) {
+                parents[find(parents, k)] = find(parents, k - n);
+            }
+            if((choices[k] & JOIN_LEFT) != 0) {
+                parents[find(parents, k)] = find(parents, k - 1);
+            }
+        }
+        int[] numbers = new int[cellCount];
+        int[] districts = new int[cellCount];
+        int districtCount = 0;
+        for (int k = 0; k < cellCount; k++) {
+            int root = find(parents, k);
+            if(numbers[root] == 0) {
+                numbers[root] = ++districtCount;
+            }
+            districts[k] = numbers[root];
+        }
+        return districts;
+    }
+
+    // finds the representative of a cell's set in a union-find, halving the path on the way
+    private static int find(int[] parents, int cell) {
+        while(parents[cell] != cell) {
+            parents[cell] = parents[parents[cell]];
+            cell = parents[cell];
+        }
+        return cell;
+    }
+
+}
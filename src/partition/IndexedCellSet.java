@@ -0,0 +1,128 @@
+package partition;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * IndexedCellSet.java
+ * IndexedCellSet is a set of Squaretopia cell indices (see SquaretopiaMatrix.index()) that supports random access.
+ * The cells are kept in a dense array, and a position array remembers where each cell sits in the dense array. A removed cell is
+ * replaced by the last cell of the dense array, so adding, removing, looking up and choosing a cell uniformly at random are all O(1).
+ * NOTE: The order of the cells in the dense array changes whenever a cell is removed.
+ */
+public final class IndexedCellSet {
+
+    private final int[] cells;     // the first size entries are the cells in this set
+    private final int[] positions; // positions[cell] is the position of the cell in the cells array (-1 if the cell is not in this set)
+    private int size;              // number of cells in this set
+
+    /**
+     * Constructs an empty set that can hold the cell indices 0 to capacity - 1.
+     * @param capacity Integer number of cells in the Squaretopia (including the outer padding layer)
+     * @return void
+     */
+    public IndexedCellSet(int capacity) {
+        this.cells = new int[capacity];
+        this.positions = new int[capacity];
+        for(int i = 0; i < capacity; i++) {
+            positions[i] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * @return Integer number of cells in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Boolean value for the statement: This set contains no cells.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param cell Integer index of some cell
+     * @return Boolean value for the statement: This set contains the cell.
+     */
+    public boolean contains(int cell) {
+        return positions[cell] != -1;
+    }
+
+    /**
+     * @param position Integer position in the dense array, where 0 <= position < size()
+     * @return Integer index of the cell at that position
+     */
+    public int get(int position) {
+        return cells[position];
+    }
+
+    /**
+     * Adds a cell to the end of the dense array.
+     * @param cell Integer index of the cell we will add
+     * @return Boolean value for the statement: The cell was not already in this set.
+     */
+    public boolean add(int cell) {
+        if(positions[cell] != -1) {
+            return false;
+        }
+        cells[size] = cell;
+        positions[cell] = size;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a cell by moving the last cell of the dense array into its position.
+     * @param cell Integer index of the cell we will remove
+     * @return Boolean value for the statement: The cell was in this set.
+     */
+    public boolean remove(int cell) {
+        int position = positions[cell];
+        if(position == -1) {
+            return false;
+        }
+        size--;
+        int lastCell = cells[size];
+        cells[position] = lastCell;
+        positions[lastCell] = position;
+        positions[cell] = -1;
+        return true;
+    }
+
+    /**
+     * Removes every cell from this set. Only the positions of the cells in this set are reset, so this is O(size()).
+     * @return void
+     */
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            positions[cells[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Chooses a cell of this set uniformly at random.
+     * NOTE: This set must not be empty.
+     * @param random RandomGenerator that we will draw from
+     * @return Integer index of the chosen cell
+     */
+    public int randomCell(RandomGenerator random) {
+        return cells[random.nextInt(size)];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder("[");
+        for(int i = 0; i < size; i++) {
+            if(i > 0) {
+                string.append(", ");
+            }
+            string.append(cells[i]);
+        }
+        return string.append("]").toString();
+    }
+
+}
@@ -0,0 +1,149 @@
+package partition;
+
+import java.util.Arrays;
+
+/**
+ * LatencyHistogram.java
+ * LatencyHistogram counts durations in nanoseconds in log-linear buckets: every power of two is split into 8 equally wide buckets,
+ * so any recorded duration is known to within 12.5% while the whole range from 1ns to centuries fits in a few hundred counters.
+ * This keeps the heavy tail of the backtracking search visible without storing a duration per trial.
+ * NOTE: A LatencyHistogram is not thread-safe. Threads should each keep their own and merge them at the end.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;                           // each power of two is split into 2^3 buckets
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;            // number of buckets per power of two
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;                // durations below this have a bucket of their own
+    private static final int NUMBER_OF_BUCKETS = LINEAR_LIMIT + (Long.SIZE - 1 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+    private final long[] counts; // counts[b] is the number of durations recorded in bucket b
+    private long count;          // number of durations recorded
+    private long totalNanos;     // sum of the durations recorded
+    private long maxNanos;       // largest duration recorded
+
+    /**
+     * Constructs an empty histogram.
+     * @return void
+     */
+    public LatencyHistogram() {
+        this.counts = new long[NUMBER_OF_BUCKETS];
+    }
+
+    /**
+     * Constructs a copy of a histogram.
+     * @param other LatencyHistogram we will copy
+     * @return void
+     */
+    public LatencyHistogram(LatencyHistogram other) {
+        this.counts = other.counts.clone();
+        this.count = other.count;
+        this.totalNanos = other.totalNanos;
+        this.maxNanos = other.maxNanos;
+    }
+
+    // determines the bucket of a duration
+    private static int bucket(long nanos) {
+        if(nanos < LINEAR_LIMIT) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos); // nanos lies in [2^exponent, 2^(exponent + 1))
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // determines the largest duration that falls into a bucket
+    private static long bucketUpperBound(int bucket) {
+        if(bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+
+    /**
+     * Records a duration.
+     * @param nanos Long duration in nanoseconds
+     * @return void
+     */
+    public void record(long nanos) {
+        counts[bucket(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * Adds every duration recorded by another histogram to this histogram.
+     * @param other LatencyHistogram that we will merge into this histogram (it is not changed)
+     * @return void
+     */
+    public void merge(LatencyHistogram other) {
+        for (int b = 0; b < NUMBER_OF_BUCKETS; b++) {
+            counts[b] += other.counts[b];
+        }
+        count += other.count;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    /**
+     * Removes every recorded duration.
+     * @return void
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * @return Long number of durations recorded
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return Double mean of the recorded durations in nanoseconds (0 if there are none)
+     */
+    public double meanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * @return Long largest recorded duration in nanoseconds
+     */
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations, rounding up to the end of its bucket.
+     * @param fraction Double fraction of the durations that should be at most the percentile, where 0 <= fraction <= 1
+     * @return Long estimated percentile in nanoseconds (0 if there are no durations)
+     */
+    public long percentileNanos(double fraction) {
+        if(fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+        }
+        long target = (long) Math.ceil(fraction * count);
+        long cumulativeCount = 0;
+        for (int b = 0; b < NUMBER_OF_BUCKETS; b++) {
+            cumulativeCount += counts[b];
+            if(cumulativeCount >= target && cumulativeCount > 0) {
+                return Math.min(bucketUpperBound(b), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + Math.round(meanNanos()) + "ns p50=" + percentileNanos(0.5) + "ns p90=" + percentileNanos(0.9)
+             + "ns p99=" + percentileNanos(0.99) + "ns p99.9=" + percentileNanos(0.999) + "ns max=" + maxNanos + "ns";
+    }
+
+}
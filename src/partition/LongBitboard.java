@@ -0,0 +1,277 @@
+package partition;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * LongBitboard.java
+ * LongBitboard lets a DistrictingEngine search an n by n Squaretopia, for n <= 8, whose whole interior fits in a single 64-bit long
+ * (cell (r, c) is bit r * n + c, and there is no padding layer). The free cells and the transitions are long bitmasks, neighbors are
+ * found by shifting and masking, flood fills are repeated dilations, and the perimeters and bounding boxes of the districts are
+ * popcounts and leading/trailing zero counts of masks.
+ * Where MatrixBoard takes the dead end or isolated cell that comes first in the matrix's buckets, this board takes the lowest one.
+ * NOTE: claimKeepsMapValid() flood fills the groups around every claimed cell that has more than one free neighbor, so it also prunes
+ * the claims that leave a single group the district cannot finish, which SquaretopiaMatrix.claimKeepsMapValid() lets through when the
+ * claimed cell's free neighbors are connected around it.
+ */
+public final class LongBitboard implements DistrictingBoard {
+
+    public static final int MAX_SIZE = 8; // largest n whose n * n cells fit in a long
+
+    private final int size;                  // n, the number of rows, columns and districts, and the number of cells in each district
+    private final long allCells;             // mask of every cell of the grid
+    private final long notFirstColumn;       // mask of every cell that has a left neighbor
+    private final long notLastColumn;        // mask of every cell that has a right neighbor
+    private final long firstRow;             // mask of the cells in the top row
+    private final int[] districtNumbers;     // district number of each cell (0 while it is free), row after row
+    private final long[] districts;          // districts[k] is the mask of district k + 1 (only filled while scoring)
+
+    private long freeCells;                  // mask of the cells that belong to no district
+    private long transitions;                // mask of the free neighbors of the district being grown that have not been tried
+
+    /**
+     * Constructs an empty n by n board.
+     * @param size Integer number of the Squaretopia's size, where size <= 8
+     * @return void
+     */
+    public LongBitboard(int size) {
+        if(size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_SIZE);
+        }
+        this.size = size;
+        this.allCells = size * size == Long.SIZE ? -1L : (1L << (size * size)) - 1;
+        long firstColumn = 0;
+        for(int row = 0; row < size; row++) {
+            firstColumn |= 1L << (row * size);
+        }
+        this.notFirstColumn = allCells & ~firstColumn;
+        this.notLastColumn = allCells & ~(firstColumn << (size - 1));
+        this.firstRow = (1L << size) - 1;
+        this.districtNumbers = new int[size * size];
+        this.districts = new long[size];
+        reset();
+    }
+
+    /**
+     * Frees every cell, so that the board can be districted again from scratch.
+     * @return void
+     */
+    public void reset() {
+        freeCells = allCells;
+        transitions = 0;
+        Arrays.fill(districtNumbers, 0);
+    }
+
+    /**
+     * @return Integer array (a copy) of the district number of each cell, row after row
+     */
+    public int[] districtNumbers() {
+        return districtNumbers.clone();
+    }
+
+    /**
+     * Scores a districted board from the bounding boxes and perimeters of its district masks.
+     * NOTE: This method assumes that every cell belongs to one of the n districts.
+     * @param scores CompactnessScores for n districts whose arrays are overwritten (see CompactnessScores.computeScores())
+     * @return CompactnessScores the same scores, computed for this board
+     */
+    public CompactnessScores calculateCompactnessScores(CompactnessScores scores) {
+        Arrays.fill(districts, 0);
+        for(int cell = 0; cell < size * size; cell++) {
+            districts[districtNumbers[cell] - 1] |= 1L << cell;
+        }
+        for(int k = 0; k < size; k++) {
+            long district = districts[k];
+            long columns = 0;
+            for(long rows = district; rows != 0; rows >>>= size) { // fold every row onto the first row
+                columns |= rows & firstRow;
+            }
+            scores.minRows[k] = Long.numberOfTrailingZeros(district) / size;
+            scores.maxRows[k] = (Long.SIZE - 1 - Long.numberOfLeadingZeros(district)) / size;
+            scores.minCols[k] = Long.numberOfTrailingZeros(columns);
+            scores.maxCols[k] = Long.SIZE - 1 - Long.numberOfLeadingZeros(columns);
+            // every cell has 4 sides, and each pair of neighboring cells inside the district hides 2 of them
+            int innerPairs = Long.bitCount(district & ((district & notFirstColumn) >>> 1)) + Long.bitCount(district & (district >>> size));
+            scores.perimeters[k] = 4 * Long.bitCount(district) - 2 * innerPairs;
+        }
+        return scores.computeScores();
+    }
+
+    @Override
+    public int cellCount() {
+        return size * size;
+    }
+
+    @Override
+    public int freeCellCount() {
+        return Long.bitCount(freeCells);
+    }
+
+    @Override
+    public int randomFreeCell(RandomGenerator random) {
+        return randomCell(freeCells, random);
+    }
+
+    @Override
+    public int deadEnd() {
+        return lowestCell(freeCells & exactlyOneNeighborIn(freeCells));
+    }
+
+    @Override
+    public int freeNeighborMask(int cell) {
+        long bit = 1L << cell;
+        int mask = 0;
+        if((freeCells & (bit >>> size)) != 0) { // a bit shifted above the first row is gone
+            mask |= 1;
+        }
+        if((freeCells & ((bit & notLastColumn) << 1)) != 0) {
+            mask |= 2;
+        }
+        if((freeCells & (bit << size)) != 0) { // a bit shifted below the last row is either gone or outside every mask of cells
+            mask |= 4;
+        }
+        if((freeCells & ((bit & notFirstColumn) >>> 1)) != 0) {
+            mask |= 8;
+        }
+        return mask;
+    }
+
+    @Override
+    public int neighbor(int cell, int direction) {
+        long bit = 1L << cell;
+        switch(direction) {
+            case 1:
+                return (bit & firstRow) != 0 ? -1 : cell - size;
+            case 2:
+                return (bit & notLastColumn) == 0 ? -1 : cell + 1;
+            case 3:
+                return cell + size >= size * size ? -1 : cell + size;
+            default:
+                return (bit & notFirstColumn) == 0 ? -1 : cell - 1;
+        }
+    }
+
+    @Override
+    public void claim(int cell) {
+        freeCells &= ~(1L << cell);
+        districtNumbers[cell] = (size * size - Long.bitCount(freeCells) + size - 1) / size; // districts are numbered in the order they are grown
+    }
+
+    @Override
+    public void free(int cell) {
+        freeCells |= 1L << cell;
+        districtNumbers[cell] = 0;
+    }
+
+    @Override
+    public boolean claimKeepsMapValid(int claimedCell, int districtSize, int cellsStillNeeded) {
+        long freeNeighbors = neighborsOf(1L << claimedCell) & freeCells;
+        if(Long.bitCount(freeNeighbors) <= 1) {
+            return true;
+        }
+        int cellsRequired = 0;
+        while(freeNeighbors != 0) {
+            long group = floodFill(freeNeighbors & -freeNeighbors);
+            freeNeighbors &= ~group;
+            cellsRequired += Long.bitCount(group) % districtSize;
+            if(cellsRequired > cellsStillNeeded) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean validMap() {
+        long unvisited = freeCells;
+        while(unvisited != 0) {
+            long group = floodFill(unvisited & -unvisited);
+            if(Long.bitCount(group) % size != 0) {
+                return false;
+            }
+            unvisited &= ~group;
+        }
+        return true;
+    }
+
+    @Override
+    public int transitionCount() {
+        return Long.bitCount(transitions);
+    }
+
+    @Override
+    public boolean isTransition(int cell) {
+        return (transitions & (1L << cell)) != 0;
+    }
+
+    @Override
+    public void addTransition(int cell) {
+        transitions |= 1L << cell;
+    }
+
+    @Override
+    public void removeTransition(int cell) {
+        transitions &= ~(1L << cell);
+    }
+
+    @Override
+    public void clearTransitions() {
+        transitions = 0;
+    }
+
+    @Override
+    public int randomTransition(RandomGenerator random) {
+        return randomCell(transitions, random);
+    }
+
+    @Override
+    public int randomTransitionOtherThan(int cell, RandomGenerator random) {
+        return randomCell(transitions & ~(1L << cell), random);
+    }
+
+    @Override
+    public int isolatedTransition() {
+        return lowestCell(transitions & ~neighborsOf(freeCells)); // transitions with no free neighbors
+    }
+
+    // grows a set of free cells by repeated dilation until it covers their whole group of free cells
+    private long floodFill(long seed) {
+        long group = seed;
+        while(true) {
+            long grown = (group | neighborsOf(group)) & freeCells;
+            if(grown == group) {
+                return group;
+            }
+            group = grown;
+        }
+    }
+
+    // the cells next to any cell of a mask (up, right, down and left)
+    private long neighborsOf(long mask) {
+        return (mask >>> size) | ((mask << size) & allCells) | ((mask & notFirstColumn) >>> 1) | ((mask & notLastColumn) << 1);
+    }
+
+    // the cells that have exactly one neighbor in a mask
+    private long exactlyOneNeighborIn(long mask) {
+        long below = mask >>> size;                      // cells whose neighbor below is in the mask
+        long above = (mask << size) & allCells;          // cells whose neighbor above is in the mask
+        long right = (mask & notFirstColumn) >>> 1;      // cells whose neighbor to the right is in the mask
+        long left = (mask & notLastColumn) << 1;         // cells whose neighbor to the left is in the mask
+        long atLeastTwo = (below & above) | (below & right) | (below & left) | (above & right) | (above & left) | (right & left);
+        return (below | above | right | left) & ~atLeastTwo;
+    }
+
+    // the lowest cell of a mask (-1 if the mask is empty)
+    private static int lowestCell(long mask) {
+        return mask == 0 ? -1 : Long.numberOfTrailingZeros(mask);
+    }
+
+    // chooses a cell of a non-empty mask uniformly at random
+    private static int randomCell(long mask, RandomGenerator random) {
+        for(int k = random.nextInt(Long.bitCount(mask)); k > 0; k--) {
+            mask &= mask - 1;
+        }
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+}
@@ -0,0 +1,150 @@
+package partition;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * MatrixBoard.java
+ * MatrixBoard lets a DistrictingEngine search a SquaretopiaMatrix of any size. The free cells and the transitions are IndexedCellSets,
+ * and dead ends and isolated cells are looked up in the matrix's buckets of free cells by free neighbor count, in bucket order.
+ * Claimed cells get the district number of the district being grown (the districts are numbered in the order they are grown), so
+ * that the matrix can be scored and read into a TrialResult once it is districted.
+ * NOTE: The board changes the matrix and the set of free cells it is given, which are reset together before every attempt (see
+ * SquaretopiaMatrix.reset() and SquaretopiaMatrix.resetFreeCells()).
+ */
+public final class MatrixBoard implements DistrictingBoard {
+
+    private final SquaretopiaMatrix matrix;     // Squaretopia whose cells are claimed
+    private final IndexedCellSet freeCells;     // free cells of matrix
+    private final IndexedCellSet transitions;   // free neighbors of the district being grown that have not been tried
+    private final int n;                        // number of rows, columns and districts of a square Squaretopia (without the padding)
+
+    /**
+     * Constructs a board over a Squaretopia and its set of free cells.
+     * @param matrix SquaretopiaMatrix that contains Squaretopia cells and some district assignments
+     * @param freeCells IndexedCellSet of all the free cells in the Squaretopia (see SquaretopiaMatrix.generateIndexedSetOfFreeCells())
+     * @return void
+     */
+    public MatrixBoard(SquaretopiaMatrix matrix, IndexedCellSet freeCells) {
+        this.matrix = matrix;
+        this.freeCells = freeCells;
+        this.transitions = new IndexedCellSet(matrix.cellCount());
+        this.n = matrix.numberOfRows() - 2; // assumes matrix is a square and subtract 2 because of outer layer
+    }
+
+    @Override
+    public int cellCount() {
+        return matrix.cellCount();
+    }
+
+    @Override
+    public int freeCellCount() {
+        return freeCells.size();
+    }
+
+    @Override
+    public int randomFreeCell(RandomGenerator random) {
+        return freeCells.randomCell(random);
+    }
+
+    // the matrix keeps its free cells bucketed by free neighbor count, so this only looks at cells that are dead ends
+    @Override
+    public int deadEnd() {
+        return firstCellInBoth(matrix.cellsWithFreeNeighborCount(1), freeCells);
+    }
+
+    @Override
+    public int freeNeighborMask(int cell) {
+        return matrix.freeNeighborMask(cell);
+    }
+
+    // an inner cell next to the outer layer has a padding cell there, which is never free
+    @Override
+    public int neighbor(int cell, int direction) {
+        return matrix.neighbor(cell, direction);
+    }
+
+    @Override
+    public void claim(int cell) {
+        freeCells.remove(cell);
+        matrix.setDistrictNumber(cell, currentDistrictNumber());
+        matrix.setChecked(cell, true);
+    }
+
+    @Override
+    public void free(int cell) {
+        freeCells.add(cell);
+        matrix.setDistrictNumber(cell, 0);
+        matrix.setChecked(cell, false);
+    }
+
+    @Override
+    public boolean claimKeepsMapValid(int claimedCell, int districtSize, int cellsStillNeeded) {
+        return matrix.claimKeepsMapValid(claimedCell, districtSize, cellsStillNeeded);
+    }
+
+    @Override
+    public boolean validMap() {
+        return matrix.validMap();
+    }
+
+    @Override
+    public int transitionCount() {
+        return transitions.size();
+    }
+
+    @Override
+    public boolean isTransition(int cell) {
+        return transitions.contains(cell);
+    }
+
+    @Override
+    public void addTransition(int cell) {
+        transitions.add(cell);
+    }
+
+    @Override
+    public void removeTransition(int cell) {
+        transitions.remove(cell);
+    }
+
+    @Override
+    public void clearTransitions() {
+        transitions.clear();
+    }
+
+    @Override
+    public int randomTransition(RandomGenerator random) {
+        return transitions.randomCell(random);
+    }
+
+    @Override
+    public int randomTransitionOtherThan(int cell, RandomGenerator random) {
+        int chosenCell = transitions.get(random.nextInt(transitions.size() - 1));
+        if(chosenCell == cell) { // the cell sits before the last position, so the last cell takes its place
+            chosenCell = transitions.get(transitions.size() - 1);
+        }
+        return chosenCell;
+    }
+
+    @Override
+    public int isolatedTransition() {
+        return firstCellInBoth(matrix.cellsWithFreeNeighborCount(0), transitions);
+    }
+
+    // determines which district we are constructing
+    private int currentDistrictNumber() {
+        return (int) Math.ceil( Double.valueOf(n * n - freeCells.size()) / n );
+    }
+
+    // returns a cell of some bucket of free cells that is also in a given set (-1 if there is none)
+    private static int firstCellInBoth(IndexedCellSet bucket, IndexedCellSet set) {
+        for(int i = 0; i < bucket.size(); i++) {
+            int cell = bucket.get(i);
+            if(set.contains(cell)) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+}
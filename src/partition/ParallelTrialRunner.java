@@ -0,0 +1,155 @@
+package partition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * ParallelTrialRunner.java
+ * ParallelTrialRunner spreads the trials of a Partition call across a fixed pool of worker threads. Every worker gets its own
+ * TrialSampler, and therefore its own DistrictingEngine and random number generator, so the workers share no mutable state.
+ * Trials are run in batches. Within a batch the workers pull trial indices from a shared counter, and once the batch is done its
+ * results are handed to the output in trial order on the calling thread. The output therefore never has to be thread-safe, and
+ * only one batch of results is held in memory at a time.
+ * A thread-safe output (see ResultSink.isThreadSafe()) skips the batches: the workers pull every trial index from one shared counter
+ * and hand each result to the output themselves, as soon as it is sampled.
+ */
+public final class ParallelTrialRunner implements AutoCloseable {
+
+    private static final int TRIALS_PER_WORKER_PER_BATCH = 256; // large enough that waiting for the slowest worker of a batch is rare
+
+    private final int numOfWorkers;     // number of worker threads
+    private final ExecutorService pool; // fixed pool of numOfWorkers threads
+
+    /**
+     * Constructs a runner with one worker per available processor.
+     * @return void
+     */
+    public ParallelTrialRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a runner with a given number of workers.
+     * @param numOfWorkers Integer number of worker threads (at least 1)
+     * @return void
+     */
+    public ParallelTrialRunner(int numOfWorkers) {
+        if(numOfWorkers < 1) {
+            throw new IllegalArgumentException("numOfWorkers must be at least 1");
+        }
+        this.numOfWorkers = numOfWorkers;
+        this.pool = Executors.newFixedThreadPool(numOfWorkers, runnable -> {
+            Thread thread = new Thread(runnable, "partition-worker");
+            thread.setDaemon(true); // an unclosed runner must not keep the JVM alive
+            return thread;
+        });
+    }
+
+    /**
+     * @return Integer number of worker threads
+     */
+    public int numberOfWorkers() {
+        return numOfWorkers;
+    }
+
+    /**
+     * Runs a number of trials across the workers and hands every result to the output.
+     * @param numOfTrials Integer number of valid samples we will generate
+     * @param samplerFactory Supplier that creates a new TrialSampler for each worker
+     * @param output ResultSink that receives the results, in trial order on the calling thread unless it is thread-safe
+     * @return SearchMetricsSnapshot of the searches of every worker's sampler, merged
+     */
+    public SearchMetricsSnapshot run(int numOfTrials, Supplier<TrialSampler> samplerFactory, ResultSink output) {
+        TrialSampler[] samplers = new TrialSampler[numOfWorkers];
+        for (int w = 0; w < numOfWorkers; w++) {
+            samplers[w] = samplerFactory.get();
+        }
+        if(output.isThreadSafe()) {
+            runTrials(samplers, 0, numOfTrials, (trial, result) -> output.accept(result));
+            return mergedMetrics(samplers);
+        }
+        int batchSize = numOfWorkers * TRIALS_PER_WORKER_PER_BATCH;
+        TrialResult[] batch = new TrialResult[Math.min(batchSize, numOfTrials)];
+        for (int batchStart = 0; batchStart < numOfTrials; batchStart += batchSize) {
+            int batchEnd = Math.min(batchStart + batchSize, numOfTrials);
+            int start = batchStart;
+            runTrials(samplers, batchStart, batchEnd, (trial, result) -> batch[trial - start] = result);
+            for (int trial = batchStart; trial < batchEnd; trial++) {
+                output.accept(batch[trial - batchStart]);
+                batch[trial - batchStart] = null;
+            }
+        }
+        return mergedMetrics(samplers);
+    }
+
+    // merges the metrics of every sampler that keeps them (the workers are done, so their counters are visible to this thread)
+    private static SearchMetricsSnapshot mergedMetrics(TrialSampler[] samplers) {
+        SearchMetricsSnapshot merged = SearchMetricsSnapshot.EMPTY;
+        for (TrialSampler sampler : samplers) {
+            if(sampler.metrics() != null) {
+                merged = merged.merge(sampler.metrics().snapshot());
+            }
+        }
+        return merged;
+    }
+
+    // runs the trials start to end - 1 across the workers, handing the result of each trial to the worker's output
+    // if a trial fails (or the calling thread is interrupted), the other workers are stopped before the exception is rethrown
+    private void runTrials(TrialSampler[] samplers, int start, int end, WorkerOutput output) {
+        AtomicInteger nextTrial = new AtomicInteger(start);
+        List<Future<Void>> workers = new ArrayList<>(numOfWorkers);
+        for (TrialSampler sampler : samplers) {
+            Callable<Void> worker = () -> {
+                for (int trial = nextTrial.getAndIncrement(); trial < end; trial = nextTrial.getAndIncrement()) {
+                    output.accept(trial, sampler.sample(trial));
+                }
+                return null;
+            };
+            workers.add(pool.submit(worker));
+        }
+        try {
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            stopWorkers(workers, nextTrial, end);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running trials", e);
+        } catch (ExecutionException e) {
+            stopWorkers(workers, nextTrial, end);
+            throw new IllegalStateException("a trial failed", e.getCause());
+        }
+    }
+
+    // keeps the workers from pulling any more trials and cancels the ones that have not finished
+    // a worker that is in the middle of a trial still finishes it, since the samplers do not check for interrupts
+    private static void stopWorkers(List<Future<Void>> workers, AtomicInteger nextTrial, int end) {
+        nextTrial.set(end);
+        for (Future<Void> worker : workers) {
+            worker.cancel(true);
+        }
+    }
+
+    /**
+     * Shuts down the worker threads once the trials that are running have finished.
+     * @return void
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // receives the result of a trial on the worker thread that sampled it
+    @FunctionalInterface
+    private interface WorkerOutput {
+        void accept(int trial, TrialResult result);
+    }
+
+}
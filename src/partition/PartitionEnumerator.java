@@ -0,0 +1,437 @@
+package partition;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PartitionEnumerator.java
+ * PartitionEnumerator counts and lists every partition of an n by n Squaretopia into n contiguous districts of n cells, which gives
+ * the exact score distributions that the random samplers can be checked against.
+ * The cells are decided one at a time, row by row. Each cell either starts a new component, or joins the component of the cell above
+ * it, of the cell to its left, or of both (which merges the two). Only the last n decided cells (the frontier) can still touch an
+ * undecided cell, so everything the rest of the search depends on is captured by a frontier state: the component of each frontier
+ * cell, the size of each component, and the pairs of components that must never merge because two of their cells are neighbors
+ * that were put in different districts. A component that leaves the frontier can never grow again, so it must then have exactly n
+ * cells. Many ways of deciding the first cells lead to the same frontier state, so the states are built layer by layer (one layer
+ * per cell) and the number of ways to complete each state is counted once, from the last layer back to the first. This frontier-based
+ * dynamic program counts the 158,753,814 partitions of a 7 by 7 Squaretopia without visiting them one by one.
+ * Listing the partitions walks the layers from the first cell and only follows choices with at least one completion, so it never
+ * backtracks out of a dead end, and the compactness scores are accumulated district by district as the districts leave the frontier.
+ * NOTE: A frontier state is packed into a long, which limits the enumerator to n <= MAX_SIZE. The layers are built once by the
+ * constructor; an enumerator is not thread-safe.
+ */
+public final class PartitionEnumerator {
+
+    public static final int MAX_SIZE = FrontierStates.MAX_SIZE; // largest n whose frontier states fit in a long
+    public static final String[] METRIC_NAMES = {"LW", "RE", "SB", "PP"}; // metrics of scoreDistributions(), in the order of TrialResult.scores()
+
+    private static final int JOIN_UP = FrontierStates.JOIN_UP;
+    private static final int JOIN_LEFT = FrontierStates.JOIN_LEFT;
+    private static final int CHOICES = FrontierStates.CHOICES;
+    private static final int STATS = 5;         // minimum row, maximum row, minimum column, maximum column and adjacent pairs of a component
+
+    private final int n;                        // Squaretopia size (n)
+    private final int cellCount;                // number of cells (n * n)
+    private final long[][] states;              // states[k] holds every frontier state that deciding cells 0 to k - 1 can lead to
+    private final int[][] children;             // children[k][CHOICES * s + choice] is the position in states[k + 1] that the choice leads to from states[k][s] (-1 if the choice is not allowed)
+    private final long[][] completions;         // completions[k][s] is the number of ways to decide cells k to cellCount - 1 from states[k][s] that end in a partition
+    private final FrontierStates frontier;      // decides the cells of frontier states
+
+    private final int scoreScale;               // lcm(1, ..., n), so that every district's min(length, width) / max(length, width) is a multiple of 1 / scoreScale
+    private final int minLongSide;              // smallest possible max(length, width) of a district of n cells
+    private final int minHalfPerimeter;         // smallest possible half perimeter of a district of n cells
+    private final long[] digitValues;           // digitValues[i] is (n + 1)^i, the weight of one district in a base n + 1 count of districts
+
+    private final int[][] slotPieces;           // slotPieces[k][j] is the piece of the frontier cell in column j before cell k is decided
+    private final int[][] pieceStats;           // pieceStats[k][STATS * p + s] is statistic s of piece p before cell k is decided
+    private final int[] choices;                // choices[k] is the choice made for cell k by the current walk
+    private long[] lengthWidthCounts;           // lengthWidthCounts[s] is the number of partitions whose district Length-Width ratios add up to s / scoreScale
+    private long[] longSideCounts;              // longSideCounts[key] is the number of partitions with the districts' longer sides counted in base n + 1 (see reockScore())
+    private long[] halfPerimeterCounts;         // halfPerimeterCounts[key] is the number of partitions with the districts' half perimeters counted in base n + 1
+    private ResultSink sink;                    // receives every partition while enumerate() walks the layers (null while scoreDistributions() does)
+    private int nextTrialIndex;                 // index of the next partition handed to the sink
+    private ScoreDistribution[] distributions;  // computed by scoreDistributions() on first use
+
+    /**
+     * Prints the number of partitions of an n by n Squaretopia and the exact distribution of each compactness score.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= MAX_SIZE
+     * @return void
+     */
+    public static void Partition (int size) {
+        PartitionEnumerator enumerator = new PartitionEnumerator(size);
+        System.out.println(size + " by " + size + " Squaretopia: " + enumerator.count() + " partitions");
+        for (ScoreDistribution distribution : enumerator.scoreDistributions()) {
+            System.out.print(distribution);
+        }
+    }
+
+    /**
+     * Hands every partition of an n by n Squaretopia to a sink, with its compactness scores.
+     * NOTE: The partitions are numbered 0, 1, 2, ... in the order they are found, and the sink is flushed after the last one.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= MAX_SIZE
+     * @param sink ResultSink that receives every partition (see TextResultSink and BinaryResultSink)
+     * @return void
+     */
+    public static void Partition (int size, ResultSink sink) {
+        new PartitionEnumerator(size).enumerate(sink);
+    }
+
+    /**
+     * Builds the frontier states of every layer and counts the completions of each of them.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= MAX_SIZE
+     * @return void
+     */
+    public PartitionEnumerator(int size) {
+        this.n = size;
+        this.cellCount = size * size;
+        this.frontier = new FrontierStates(size);
+        this.states = new long[cellCount + 1][];
+        this.children = new int[cellCount][];
+        this.completions = new long[cellCount + 1][];
+        buildLayers();
+        int scale = 1;
+        for (int i = 2; i <= n; i++) {
+            scale = scale / gcd(scale, i) * i;
+        }
+        this.scoreScale = scale;
+        int side = 1;
+        while(side * side < n) {
+            side++;
+        }
+        this.minLongSide = side;
+        int halfPerimeter = 2;
+        while((halfPerimeter / 2) * ((halfPerimeter + 1) / 2) < n) {
+            halfPerimeter++;
+        }
+        this.minHalfPerimeter = halfPerimeter;
+        this.digitValues = new long[n + 1];
+        digitValues[0] = 1;
+        for (int i = 1; i <= n; i++) {
+            digitValues[i] = digitValues[i - 1] * (n + 1);
+        }
+        this.slotPieces = new int[cellCount + 1][n];
+        this.pieceStats = new int[cellCount + 1][STATS * (n + 1)];
+        this.choices = new int[cellCount];
+    }
+
+    /**
+     * @return Integer Squaretopia size (n)
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return Long number of partitions of the n by n Squaretopia into n contiguous districts of n cells
+     */
+    public long count() {
+        return completions[0][0];
+    }
+
+    /**
+     * @return Integer number of frontier states over all layers, which is what the memory of the enumerator grows with
+     */
+    public int numberOfStates() {
+        int total = 0;
+        for (long[] layer : states) {
+            total += layer.length;
+        }
+        return total;
+    }
+
+    /**
+     * Hands every partition to a sink, with its compactness scores (LW RE SB PP).
+     * NOTE: The partitions are numbered 0, 1, 2, ... in the order they are found, and the sink is flushed after the last one.
+     * @param sink ResultSink that receives every partition
+     * @return Long number of partitions handed to the sink
+     */
+    public long enumerate(ResultSink sink) {
+        if(count() > Integer.MAX_VALUE) {
+            throw new IllegalStateException(count() + " partitions cannot be numbered with trial indices");
+        }
+        this.sink = sink;
+        this.nextTrialIndex = 0;
+        walk();
+        this.sink = null;
+        sink.flush();
+        return nextTrialIndex;
+    }
+
+    /**
+     * Finds the exact distribution of each compactness score over every partition. Only the districts' longer sides, Length-Width
+     * ratios and perimeters are tallied while the partitions are walked, so no partition is ever stored.
+     * @return ScoreDistribution array of the Length-Width, Reock, Schwartzberg and Polsby-Popper distributions (see METRIC_NAMES)
+     */
+    public ScoreDistribution[] scoreDistributions() {
+        if(distributions == null) {
+            lengthWidthCounts = new long[n * scoreScale + 1];
+            longSideCounts = new long[(int) digitValues[n - minLongSide + 1]];
+            halfPerimeterCounts = new long[(int) digitValues[n + 2 - minHalfPerimeter]];
+            walk();
+            Map<Double, Long> lengthWidth = new HashMap<>();
+            for (int s = 0; s < lengthWidthCounts.length; s++) {
+                if(lengthWidthCounts[s] != 0) {
+                    lengthWidth.merge(lengthWidthScore(s), lengthWidthCounts[s], Long::sum);
+                }
+            }
+            Map<Double, Long> reock = new HashMap<>();
+            for (int key = 0; key < longSideCounts.length; key++) {
+                if(longSideCounts[key] != 0) {
+                    reock.merge(reockScore(key), longSideCounts[key], Long::sum);
+                }
+            }
+            Map<Double, Long> schwartzberg = new HashMap<>();
+            Map<Double, Long> polsbyPopper = new HashMap<>();
+            for (int key = 0; key < halfPerimeterCounts.length; key++) {
+                if(halfPerimeterCounts[key] != 0) {
+                    schwartzberg.merge(schwartzbergScore(key), halfPerimeterCounts[key], Long::sum);
+                    polsbyPopper.merge(polsbyPopperScore(key), halfPerimeterCounts[key], Long::sum);
+                }
+            }
+            distributions = new ScoreDistribution[] {
+                new ScoreDistribution(METRIC_NAMES[0], lengthWidth),
+                new ScoreDistribution(METRIC_NAMES[1], reock),
+                new ScoreDistribution(METRIC_NAMES[2], schwartzberg),
+                new ScoreDistribution(METRIC_NAMES[3], polsbyPopper)
+            };
+            lengthWidthCounts = null;
+            longSideCounts = null;
+            halfPerimeterCounts = null;
+        }
+        return distributions.clone();
+    }
+
+    // builds states[k] and children[k] for every layer from the empty frontier, then counts completions from the last layer back
+    private void buildLayers() {
+        states[0] = new long[] {FrontierStates.EMPTY};
+        for (int k = 0; k < cellCount; k++) {
+            long[] layer = states[k];
+            int[] layerChildren = new int[CHOICES * layer.length];
+            Map<Long, Integer> positions = new HashMap<>();
+            long[] nextLayer = new long[16];
+            for (int s = 0; s < layer.length; s++) {
+                for (int choice = 0; choice < CHOICES; choice++) {
+                    long child = frontier.transition(k, layer[s], choice);
+                    if(child < 0) {
+                        layerChildren[CHOICES * s + choice] = -1;
+                        continue;
+                    }
+                    Integer position = positions.get(child);
+                    if(position == null) {
+                        position = positions.size();
+                        positions.put(child, position);
+                        if(position == nextLayer.length) {
+                            nextLayer = Arrays.copyOf(nextLayer, 2 * nextLayer.length);
+                        }
+                        nextLayer[position] = child;
+                    }
+                    layerChildren[CHOICES * s + choice] = position;
+                }
+            }
+            children[k] = layerChildren;
+            states[k + 1] = Arrays.copyOf(nextLayer, positions.size());
+        }
+        completions[cellCount] = new long[states[cellCount].length];
+        Arrays.fill(completions[cellCount], 1); // the last layer only holds the finished frontier (see FrontierStates.FINISHED)
+        for (int k = cellCount - 1; k >= 0; k--) {
+            long[] layerCompletions = new long[states[k].length];
+            for (int s = 0; s < layerCompletions.length; s++) {
+                for (int choice = 0; choice < CHOICES; choice++) {
+                    int child = children[k][CHOICES * s + choice];
+                    if(child >= 0) {
+                        layerCompletions[s] += completions[k + 1][child];
+                    }
+                }
+            }
+            completions[k] = layerCompletions;
+        }
+        if(states[0].length == 0 || completions[0].length == 0) {
+            completions[0] = new long[] {0};
+        }
+    }
+
+    // walks every path through the layers that ends in a partition, from the first cell
+    private void walk() {
+        walk(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Tries every choice for cell k that has at least one completion. Alongside the frontier state, the walk keeps the pieces (the
+     * components) of the frontier cells with their bounding boxes and numbers of adjacent pairs, and adds up each district's scores
+     * once it leaves the frontier.
+     * @param k Integer index of the next cell to decide
+     * @param s Integer position of the frontier state in states[k]
+     * @param lengthWidthSum Integer sum of the finished districts' min(length, width) / max(length, width), times scoreScale
+     * @param longSideKey Long count of the finished districts by their longer side, in base n + 1
+     * @param halfPerimeterKey Long count of the finished districts by their half perimeter, in base n + 1
+     * @return void
+     */
+    private void walk(int k, int s, int lengthWidthSum, long longSideKey, long halfPerimeterKey) {
+        if(k == cellCount) {
+            if(sink != null) {
+                sink.accept(resultOf(nextTrialIndex++, scoresOf(lengthWidthSum, longSideKey, halfPerimeterKey)));
+            } else {
+                lengthWidthCounts[lengthWidthSum]++;
+                longSideCounts[(int) longSideKey]++;
+                halfPerimeterCounts[(int) halfPerimeterKey]++;
+            }
+            return;
+        }
+        int row = k / n;
+        int col = k % n;
+        for (int choice = 0; choice < CHOICES; choice++) {
+            int child = children[k][CHOICES * s + choice];
+            if(child < 0 || completions[k + 1][child] == 0) {
+                continue;
+            }
+            int[] pieces = slotPieces[k + 1];
+            int[] stats = pieceStats[k + 1];
+            System.arraycopy(slotPieces[k], 0, pieces, 0, n);
+            System.arraycopy(pieceStats[k], 0, stats, 0, stats.length);
+            int up = row > 0 ? pieces[col] : -1;
+            int left = col > 0 ? pieces[col - 1] : -1;
+            int piece;
+            if(choice == 0) {
+                int used = 0;
+                for (int j = 0; j < n; j++) {
+                    if(frontier.slotExists(k, j)) {
+                        used |= 1 << pieces[j];
+                    }
+                }
+                piece = Integer.numberOfTrailingZeros(~used);
+                stats[STATS * piece] = row;
+                stats[STATS * piece + 1] = row;
+                stats[STATS * piece + 2] = col;
+                stats[STATS * piece + 3] = col;
+                stats[STATS * piece + 4] = 0;
+            } else {
+                piece = (choice & JOIN_UP) != 0 ? up : left;
+                if(choice == (JOIN_UP | JOIN_LEFT) && up != left) {
+                    // the cell merges the piece to its left into the piece above it
+                    stats[STATS * up] = Math.min(stats[STATS * up], stats[STATS * left]);
+                    stats[STATS * up + 2] = Math.min(stats[STATS * up + 2], stats[STATS * left + 2]);
+                    stats[STATS * up + 3] = Math.max(stats[STATS * up + 3], stats[STATS * left + 3]);
+                    stats[STATS * up + 4] += stats[STATS * left + 4];
+                    for (int j = 0; j < n; j++) {
+                        if(pieces[j] == left && frontier.slotExists(k, j)) {
+                            pieces[j] = up;
+                        }
+                    }
+                }
+                stats[STATS * piece + 1] = row;
+                stats[STATS * piece + 2] = Math.min(stats[STATS * piece + 2], col);
+                stats[STATS * piece + 3] = Math.max(stats[STATS * piece + 3], col);
+                stats[STATS * piece + 4] += Integer.bitCount(choice);
+            }
+            pieces[col] = piece;
+            choices[k] = choice;
+            int nextLengthWidthSum = lengthWidthSum;
+            long nextLongSideKey = longSideKey;
+            long nextHalfPerimeterKey = halfPerimeterKey;
+            if(up >= 0 && up != piece && piecesContain(pieces, k + 1, up) == false) { // the piece above is a finished district
+                nextLengthWidthSum += lengthWidthTerm(stats, up);
+                nextLongSideKey += digitValues[longSide(stats, up) - minLongSide];
+                nextHalfPerimeterKey += digitValues[halfPerimeter(stats, up) - minHalfPerimeter];
+            }
+            if(k == cellCount - 1) { // every piece left on the frontier is a finished district
+                int finished = 0;
+                for (int j = 0; j < n; j++) {
+                    if((finished & (1 << pieces[j])) == 0) {
+                        finished |= 1 << pieces[j];
+                        nextLengthWidthSum += lengthWidthTerm(stats, pieces[j]);
+                        nextLongSideKey += digitValues[longSide(stats, pieces[j]) - minLongSide];
+                        nextHalfPerimeterKey += digitValues[halfPerimeter(stats, pieces[j]) - minHalfPerimeter];
+                    }
+                }
+            }
+            walk(k + 1, child, nextLengthWidthSum, nextLongSideKey, nextHalfPerimeterKey);
+        }
+    }
+
+    // determines if some frontier cell before cell k belongs to a piece
+    private boolean piecesContain(int[] pieces, int k, int piece) {
+        for (int j = 0; j < n; j++) {
+            if(pieces[j] == piece && frontier.slotExists(k, j)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // returns the larger of a finished district's length and width
+    private int longSide(int[] stats, int piece) {
+        int length = stats[STATS * piece + 1] - stats[STATS * piece] + 1;
+        int width = stats[STATS * piece + 3] - stats[STATS * piece + 2] + 1;
+        return Math.max(length, width);
+    }
+
+    // returns scoreScale * min(length, width) / max(length, width) of a finished district, which is always a whole number
+    private int lengthWidthTerm(int[] stats, int piece) {
+        int length = stats[STATS * piece + 1] - stats[STATS * piece] + 1;
+        int width = stats[STATS * piece + 3] - stats[STATS * piece + 2] + 1;
+        return scoreScale / Math.max(length, width) * Math.min(length, width);
+    }
+
+    // returns half the perimeter of a finished district: each of its n cells has 4 sides, and each adjacent pair hides 2 of them
+    private int halfPerimeter(int[] stats, int piece) {
+        return 2 * n - stats[STATS * piece + 4];
+    }
+
+    // computes the Length-Width score of a partition from its districts' Length-Width ratios added up and multiplied by scoreScale
+    private double lengthWidthScore(int lengthWidthSum) {
+        return (double) lengthWidthSum / ((double) scoreScale * n);
+    }
+
+    // computes the Reock score of a partition from its districts counted by their longer side (the circle around a district is
+    // taken to be the square on its longer side, as in CompactnessScores)
+    private double reockScore(long longSideKey) {
+        double total = 0;
+        for (int side = minLongSide; side <= n; side++) {
+            long districts = longSideKey / digitValues[side - minLongSide] % (n + 1);
+            total += districts * ((double) n / ((double) side * side));
+        }
+        return total / n;
+    }
+
+    // computes the Schwartzberg score of a partition from its districts counted by their half perimeter
+    private double schwartzbergScore(long halfPerimeterKey) {
+        double total = 0;
+        for (int halfPerimeter = minHalfPerimeter; halfPerimeter <= n + 1; halfPerimeter++) {
+            long districts = halfPerimeterKey / digitValues[halfPerimeter - minHalfPerimeter] % (n + 1);
+            total += districts * ((4 * Math.sqrt(n)) / (2.0 * halfPerimeter));
+        }
+        return total / n;
+    }
+
+    // computes the Polsby-Popper score of a partition from its districts counted by their half perimeter
+    private double polsbyPopperScore(long halfPerimeterKey) {
+        double total = 0;
+        for (int halfPerimeter = minHalfPerimeter; halfPerimeter <= n + 1; halfPerimeter++) {
+            long districts = halfPerimeterKey / digitValues[halfPerimeter - minHalfPerimeter] % (n + 1);
+            total += districts * (n / Math.pow(2.0 * halfPerimeter / 4, 2));
+        }
+        return total / n;
+    }
+
+    // computes the four scores (LW RE SB PP) of the partition the walk has just finished
+    private double[] scoresOf(int lengthWidthSum, long longSideKey, long halfPerimeterKey) {
+        return new double[] {lengthWidthScore(lengthWidthSum), reockScore(longSideKey), schwartzbergScore(halfPerimeterKey), polsbyPopperScore(halfPerimeterKey)};
+    }
+
+    /**
+     * Rebuilds the partition the walk has just finished from the choices made for its cells (see FrontierStates.districtsOf()).
+     * @param trialIndex Integer index of the partition
+     * @param scores Double array of the compactness scores of the partition (LW RE SB PP)
+     * @return TrialResult of the partition
+     */
+    private TrialResult resultOf(int trialIndex, double[] scores) {
+        return new TrialResult(trialIndex, n, n, FrontierStates.districtsOf(choices, n), scores);
+    }
+
+    // greatest common divisor of two positive integers
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+}
@@ -0,0 +1,111 @@
+package partition;
+
+import java.util.function.Function;
+
+/**
+ * PartitionOptions.java
+ * PartitionOptions gathers everything about a Partition call other than the Squaretopia and the number of trials: what happens when
+ * a district cannot be grown, the work budget of each attempt, the random number generator of each trial, where the results go, and
+ * whether the trials are spread across the workers of a ParallelTrialRunner. Every option starts out at the value the Partition
+ * methods have always used, and each with...() method returns a copy with one option changed:
+ *     Partitioner.Partition(size, numOfTrials, PartitionOptions.DEFAULT.withStreams(RandomStreams.seeded(seed)).withRunner(runner))
+ * NOTE: Options that a sampler has no use for are ignored (the single districters and UniformPartitioner have no BacktrackPolicy,
+ * and UniformPartitioner has no RestartSchedule).
+ */
+public final class PartitionOptions {
+
+    public static final PartitionOptions DEFAULT = new PartitionOptions(BacktrackPolicy.FULL_RESTART, RestartSchedule.NONE, null, null, null);
+
+    private final BacktrackPolicy policy;     // what happens when a district cannot be grown
+    private final RestartSchedule schedule;   // work budget of each attempt at a trial
+    private final RandomStreams streams;      // random number generator of each trial (null for a random seed on every run)
+    private final ResultSink sink;            // receives the result of every trial (null for a new TextResultSink on every run)
+    private final ParallelTrialRunner runner; // spreads the trials across its workers (null to run them on the calling thread)
+
+    private PartitionOptions(BacktrackPolicy policy, RestartSchedule schedule, RandomStreams streams, ResultSink sink, ParallelTrialRunner runner) {
+        this.policy = policy;
+        this.schedule = schedule;
+        this.streams = streams;
+        this.sink = sink;
+        this.runner = runner;
+    }
+
+    /**
+     * @param policy BacktrackPolicy that decides what happens when a district cannot be grown (BacktrackPolicy.FULL_RESTART by default)
+     * @return PartitionOptions with the given policy
+     */
+    public PartitionOptions withPolicy(BacktrackPolicy policy) {
+        return new PartitionOptions(policy, schedule, streams, sink, runner);
+    }
+
+    /**
+     * @param schedule RestartSchedule that limits the work of each attempt at a trial (RestartSchedule.NONE by default)
+     * @return PartitionOptions with the given schedule
+     */
+    public PartitionOptions withSchedule(RestartSchedule schedule) {
+        return new PartitionOptions(policy, schedule, streams, sink, runner);
+    }
+
+    /**
+     * NOTE: Trial i of a run only depends on the streams and i, so it can be regenerated with the sampler's sample(i).
+     * @param streams RandomStreams that give each trial its own random number generator (RandomStreams.unseeded() on every run by default)
+     * @return PartitionOptions with the given streams
+     */
+    public PartitionOptions withStreams(RandomStreams streams) {
+        return new PartitionOptions(policy, schedule, streams, sink, runner);
+    }
+
+    /**
+     * NOTE: Every result is handed to the sink in trial order (on the calling thread, unless the trials run on a runner and the sink
+     * is thread-safe, see ResultSink.isThreadSafe()), and the sink is flushed after the last trial.
+     * @param sink ResultSink that receives the result of every trial (a new TextResultSink on every run by default)
+     * @return PartitionOptions with the given sink
+     */
+    public PartitionOptions withSink(ResultSink sink) {
+        return new PartitionOptions(policy, schedule, streams, sink, runner);
+    }
+
+    /**
+     * NOTE: With seeded streams, the results do not depend on the number of workers, or on whether a runner is used at all.
+     * @param runner ParallelTrialRunner whose workers will run the trials, each with its own sampler (none by default)
+     * @return PartitionOptions with the given runner
+     */
+    public PartitionOptions withRunner(ParallelTrialRunner runner) {
+        return new PartitionOptions(policy, schedule, streams, sink, runner);
+    }
+
+    /**
+     * @return BacktrackPolicy that decides what happens when a district cannot be grown
+     */
+    public BacktrackPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * @return RestartSchedule that limits the work of each attempt at a trial
+     */
+    public RestartSchedule schedule() {
+        return schedule;
+    }
+
+    /**
+     * Runs the trials of a Partition call with these options and flushes the sink.
+     * @param numOfTrials Integer number of valid samples we will generate
+     * @param samplerFactory Function that creates a sampler drawing from the given streams (called once, or once per worker of the runner)
+     * @return void
+     */
+    public void run(int numOfTrials, Function<RandomStreams, TrialSampler> samplerFactory) {
+        RandomStreams runStreams = streams != null ? streams : RandomStreams.unseeded(); // one seed for every worker of the run
+        ResultSink runSink = sink != null ? sink : new TextResultSink();
+        if(runner != null) {
+            runner.run(numOfTrials, () -> samplerFactory.apply(runStreams), runSink);
+        } else {
+            TrialSampler sampler = samplerFactory.apply(runStreams);
+            for(int trial = 0; trial < numOfTrials; trial++) {
+                runSink.accept(sampler.sample(trial));
+            }
+        }
+        runSink.flush();
+    }
+
+}
@@ -1,5 +1,26 @@
 package partition;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
 import org.junit.Test;
 
 /**
@@ -26,6 +47,797 @@ public class PartitionTests {
         // WeightedPartitioner.Partition(5, 2, 50);                 // WeightedPartitioner.Partition(Squaretopia Size, Number of Partitions, Weighting Factor Probability);
         // WeightedSingleDistricter.Partition(5, 2, 50);            // WeightedSingleDistricter.Partition(Squaretopia Size, Number of Single Districts, Weighting Factor Probability);
         // WeightedUnboundedSingleDistricter.Partition(5, 2, 50);   // WeightedUnboundedSingleDistricter.Partition(Squaretopia Size, Number of Single Districts, Weighting Factor Probability);
+        // BitboardPartitioner.Partition(5, 2);                     // BitboardPartitioner.Partition(Squaretopia Size <= 8, Number of Partitions[, Weighting Factor Probability]);
+        // PartitionEnumerator.Partition(5);                         // PartitionEnumerator.Partition(Squaretopia Size <= 7[, ResultSink that receives every partition]);
+        // UniformPartitioner.Partition(5, 2);                      // UniformPartitioner.Partition(Squaretopia Size <= 7, Number of Partitions);
+        // try (ParallelTrialRunner runner = new ParallelTrialRunner()) {                      // every class also takes PartitionOptions as its last argument, e.g. to spread the trials across all cores
+        //     Partitioner.Partition(5, 2, PartitionOptions.DEFAULT.withRunner(runner));
+        // }
+    }
+    
+    @Test
+    public void RowBitboard_t0() {
+        // fillComponent() and perimeter() must agree with a cell by cell breadth-first search, also on rows that span several words
+        SplittableRandom random = new SplittableRandom(7);
+        int[][] gridSizes = {{1, 1}, {5, 5}, {8, 63}, {7, 64}, {6, 65}, {4, 130}, {70, 70}};
+        for (int[] gridSize : gridSizes) {
+            int rows = gridSize[0];
+            int columns = gridSize[1];
+            for (int trial = 0; trial < 20; trial++) {
+                RowBitboard region = new RowBitboard(rows, columns);
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < columns; c++) {
+                        if(random.nextInt(100) < 60) {
+                            region.add(region.position(r, c));
+                        }
+                    }
+                }
+                RowBitboard unvisited = new RowBitboard(region);
+                RowBitboard group = new RowBitboard(region);
+                for(int cell = unvisited.nextCell(0); cell >= 0; cell = unvisited.nextCell(cell + 1)) {
+                    Set<Integer> expected = breadthFirstSearch(region, cell);
+                    assertEquals(expected.size(), group.fillComponent(region, cell));
+                    assertEquals(expected.size(), group.size());
+                    int perimeter = 0;
+                    for (int position : expected) {
+                        assertTrue(group.contains(position));
+                        int r = group.row(position);
+                        int c = group.col(position);
+                        int[][] sides = {{r - 1, c}, {r + 1, c}, {r, c - 1}, {r, c + 1}};
+                        for (int[] side : sides) {
+                            boolean inside = side[0] >= 0 && side[0] < rows && side[1] >= 0 && side[1] < columns;
+                            if(inside == false || expected.contains(group.position(side[0], side[1])) == false) {
+                                perimeter++;
+                            }
+                        }
+                    }
+                    assertEquals(perimeter, group.perimeter());
+                    unvisited.removeAll(group);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void RowBitboard_t1() {
+        // findContiguousNeighbors() must find the same group on a flat matrix as on a matrix of SquaretopiaCells, and check its cells
+        SplittableRandom random = new SplittableRandom(11);
+        for (int size : new int[] {3, 6, 66}) {
+            SquaretopiaMatrix cells = new SquaretopiaMatrix(size + 2, size + 2, false);
+            SquaretopiaMatrix flat = new SquaretopiaMatrix(size + 2, size + 2, true);
+            for (int i = 1; i <= size; i++) {
+                for (int j = 1; j <= size; j++) {
+                    if(random.nextInt(100) < 35) {
+                        cells.setChecked(cells.index(i, j), true);
+                        flat.setChecked(flat.index(i, j), true);
+                    }
+                }
+            }
+            for (int i = 1; i <= size; i++) {
+                for (int j = 1; j <= size; j++) {
+                    if(cells.isChecked(cells.index(i, j)) == false) {
+                        Set<SquaretopiaCell> expected = cells.findContiguousNeighbors(cells, cells.data[i][j]);
+                        Set<SquaretopiaCell> found = flat.findContiguousNeighbors(flat, new SquaretopiaCell(i, j));
+                        assertEquals(expected, found);
+                        for (SquaretopiaCell cell : found) {
+                            assertTrue(flat.isChecked(flat.index(cell.row, cell.col)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void PartitionEnumerator_t0() {
+        // the numbers of partitions of the n by n Squaretopia into n contiguous districts of n cells, for n = 1 to 5
+        long[] expectedCounts = {1, 2, 10, 117, 4006};
+        for (int size = 1; size <= expectedCounts.length; size++) {
+            int n = size;
+            PartitionEnumerator enumerator = new PartitionEnumerator(n);
+            assertEquals(expectedCounts[n - 1], enumerator.count());
+            Set<String> partitions = new HashSet<>();
+            long enumerated = enumerator.enumerate(result -> assertTrue(partitions.add(checkPartition(result, n))));
+            assertEquals(expectedCounts[n - 1], enumerated);
+            assertEquals(expectedCounts[n - 1], partitions.size());
+        }
+    }
+    
+    @Test
+    public void UniformPartitioner_t0() {
+        // every one of the 117 partitions of the 4 by 4 Squaretopia is drawn, each with probability 1 / 117
+        int n = 4;
+        Set<String> enumerated = new HashSet<>();
+        new PartitionEnumerator(n).enumerate(result -> enumerated.add(checkPartition(result, n)));
+        UniformPartitioner sampler = new UniformPartitioner(n, RandomStreams.seeded(4));
+        Set<String> drawn = new HashSet<>();
+        for (int trial = 0; trial < 5000; trial++) {
+            TrialResult result = sampler.sample(trial);
+            assertEquals(-Math.log(117), result.logProposal(), 1e-12);
+            String partition = checkPartition(result, n);
+            assertTrue(enumerated.contains(partition));
+            drawn.add(partition);
+        }
+        assertEquals(117, drawn.size());
+    }
+    
+    @Test
+    public void DistrictingEngine_t0() {
+        // the weighted engine must make the same claims and random draws as the baseline recursion, whose levels each keep their own copy
+        // of the transitions, so a tried cell that a deeper level adds again gets its old direction back when that level fails
+        for (int n = 4; n <= 7; n++) {
+            RandomStreams streams = RandomStreams.seeded(n);
+            WeightedPartitioner sampler = new WeightedPartitioner(n, 80, BacktrackPolicy.FULL_RESTART, streams);
+            for (int trial = 0; trial < 300; trial++) {
+                TrialResult result = sampler.sample(trial);
+                double[] logProposal = new double[1];
+                int[] expected = weightedRecursion(n, 80, true, streams.forTrial(trial), logProposal);
+                for (int row = 0; row < n; row++) {
+                    for (int col = 0; col < n; col++) {
+                        assertEquals(expected[row * n + col], result.districtNumber(row, col));
+                    }
+                }
+                assertEquals(logProposal[0], result.logProposal(), 1e-9);
+            }
+        }
+    }
+    
+    @Test
+    public void TrialResult_t0() {
+        // every search of a 2 by 2 Squaretopia draws its first cell among 4 and its second among 2, and the other district is forced
+        RandomStreams streams = RandomStreams.seeded(2);
+        TrialSampler[] samplers = {new Partitioner(2, BacktrackPolicy.FULL_RESTART, streams),
+                                   new WeightedPartitioner(2, 80, BacktrackPolicy.FULL_RESTART, streams),
+                                   new BitboardPartitioner(2, BacktrackPolicy.FULL_RESTART, streams),
+                                   new BitboardPartitioner(2, 80, BacktrackPolicy.FULL_RESTART, streams)};
+        for (TrialSampler sampler : samplers) {
+            for (int trial = 0; trial < 20; trial++) {
+                assertEquals(-Math.log(8), sampler.sample(trial).logProposal(), 1e-12);
+            }
+        }
+    }
+    
+    @Test
+    public void ParallelTrialRunner_t0() {
+        // with seeded streams, every sampler hands the same results to its sink whether its trials run serially or on a runner,
+        // across more than one batch of the runner
+        int numOfTrials = 600;
+        PartitionOptions serial = PartitionOptions.DEFAULT.withStreams(RandomStreams.seeded(10));
+        try (ParallelTrialRunner runner = new ParallelTrialRunner(2)) {
+            PartitionOptions parallel = serial.withRunner(runner);
+            for (int s = 0; s < 9; s++) {
+                CollectingResultSink serialSink = new CollectingResultSink();
+                CollectingResultSink parallelSink = new CollectingResultSink();
+                runSampler(s, numOfTrials, serial.withSink(serialSink));
+                runSampler(s, numOfTrials, parallel.withSink(parallelSink));
+                assertSameResults(serialSink.results(), parallelSink.results());
+            }
+        }
+    }
+    
+    // runs the s-th sampler of ParallelTrialRunner_t0 through its Partition entry point
+    private static void runSampler(int s, int numOfTrials, PartitionOptions options) {
+        switch (s) {
+            case 0 -> Partitioner.Partition(5, numOfTrials, options);
+            case 1 -> WeightedPartitioner.Partition(5, numOfTrials, 50, options);
+            case 2 -> SingleDistricter.Partition(5, numOfTrials, options);
+            case 3 -> UnboundedSingleDistricter.Partition(5, numOfTrials, options);
+            case 4 -> WeightedSingleDistricter.Partition(5, numOfTrials, 50, options);
+            case 5 -> WeightedUnboundedSingleDistricter.Partition(5, numOfTrials, 50, options);
+            case 6 -> BitboardPartitioner.Partition(5, numOfTrials, options);
+            case 7 -> BitboardPartitioner.Partition(5, numOfTrials, 50, options);
+            default -> UniformPartitioner.Partition(4, numOfTrials, options);
+        }
+    }
+    
+    // checks that two lists of results have the same trials, districts, scores and log proposals, in the same order
+    private static void assertSameResults(List<TrialResult> expected, List<TrialResult> actual) {
+        assertSameResults(expected, actual, 0);
+    }
+    
+    // checks that two lists of results of the trials firstTrial, firstTrial + 1, ... are the same
+    private static void assertSameResults(List<TrialResult> expected, List<TrialResult> actual, int firstTrial) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TrialResult e = expected.get(i);
+            TrialResult a = actual.get(i);
+            assertEquals(firstTrial + i, a.trialIndex());
+            assertEquals(e.trialIndex(), a.trialIndex());
+            assertEquals(e.numberOfRows(), a.numberOfRows());
+            assertEquals(e.numberOfColumns(), a.numberOfColumns());
+            for (int row = 0; row < e.numberOfRows(); row++) {
+                for (int col = 0; col < e.numberOfColumns(); col++) {
+                    assertEquals(e.districtNumber(row, col), a.districtNumber(row, col));
+                }
+            }
+            assertArrayEquals(e.scores(), a.scores(), 0);
+            assertEquals(e.logProposal(), a.logProposal(), 0);
+        }
+    }
+    
+    @Test
+    public void RandomStreams_t0() {
+        // any trial of a seeded run can be regenerated on its own, by a new sampler or out of order by a sampler that ran other trials
+        RandomStreams streams = RandomStreams.seeded(12);
+        CollectingResultSink sink = new CollectingResultSink();
+        WeightedPartitioner.Partition(6, 40, 70, PartitionOptions.DEFAULT.withStreams(streams).withSink(sink));
+        WeightedPartitioner reused = new WeightedPartitioner(6, 70, BacktrackPolicy.FULL_RESTART, streams);
+        for (int trial = 39; trial >= 0; trial -= 3) {
+            TrialResult regenerated = new WeightedPartitioner(6, 70, BacktrackPolicy.FULL_RESTART, streams).sample(trial);
+            assertSameResults(List.of(sink.results().get(trial)), List.of(regenerated), trial);
+            assertSameResults(List.of(sink.results().get(trial)), List.of(reused.sample(trial)), trial);
+        }
+        // the generator of a trial only depends on the seed and the trial index
+        for (int trial = 0; trial < 40; trial++) {
+            assertEquals(streams.forTrial(trial).nextLong(), RandomStreams.seeded(12).forTrial(trial).nextLong());
+        }
+    }
+    
+    @Test
+    public void CompactnessScores_t0() {
+        // the single pass of calculateCompactnessScores() (and LongBitboard's own scoring) gives the scores of the four
+        // separate scans, on flat and SquaretopiaCell matrices
+        RandomStreams streams = RandomStreams.seeded(13);
+        for (int n = 2; n <= 8; n++) {
+            TrialSampler[] samplers = {new Partitioner(n, BacktrackPolicy.FULL_RESTART, streams),
+                                       new WeightedPartitioner(n, 60, BacktrackPolicy.FULL_RESTART, streams),
+                                       new BitboardPartitioner(n, BacktrackPolicy.FULL_RESTART, streams)};
+            for (TrialSampler sampler : samplers) {
+                for (int trial = 0; trial < 20; trial++) {
+                    TrialResult result = sampler.sample(trial);
+                    for (boolean flat : new boolean[] {true, false}) {
+                        SquaretopiaMatrix matrix = matrixOf(result, flat);
+                        double[] scores = matrix.calculateCompactnessScores(new CompactnessScores(n)).toArray();
+                        double[] separate = {matrix.LengthWidth(), matrix.Reock(), matrix.Schwartzberg(), matrix.PolsbyPopper()};
+                        assertArrayEquals(separate, scores, 1e-12);
+                        assertArrayEquals(separate, result.scores(), 1e-12);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void SquaretopiaMatrix_t0() {
+        // the sizes, perimeters and bounding boxes that setDistrictNumber() keeps up to date match a recount of the grid after
+        // every claim, move and return of a cell
+        SplittableRandom random = new SplittableRandom(14);
+        for (int n : new int[] {1, 3, 6, 9}) {
+            for (boolean flat : new boolean[] {true, false}) {
+                SquaretopiaMatrix matrix = new SquaretopiaMatrix(n + 2, n + 2, flat);
+                for (int step = 0; step < 2000; step++) {
+                    int cell = matrix.index(1 + random.nextInt(n), 1 + random.nextInt(n));
+                    matrix.setDistrictNumber(cell, random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(n)); // returns some cells, claims or moves the rest
+                    if(step % 7 == 0) {
+                        assertShapesMatchRecount(matrix, n);
+                    }
+                }
+                for (int row = 1; row <= n; row++) {
+                    for (int col = 1; col <= n; col++) {
+                        matrix.setDistrictNumber(matrix.index(row, col), 0);
+                    }
+                }
+                assertShapesMatchRecount(matrix, n);
+            }
+        }
+    }
+    
+    // checks the tracked shape of every district of a matrix against a scan of its inner cells
+    private static void assertShapesMatchRecount(SquaretopiaMatrix matrix, int n) {
+        for (int d = 1; d <= n; d++) {
+            int size = 0;
+            int perimeter = 0;
+            int minRow = n + 2;
+            int maxRow = -1;
+            int minCol = n + 2;
+            int maxCol = -1;
+            RowBitboard cells = new RowBitboard(n, n);
+            for (int row = 1; row <= n; row++) {
+                for (int col = 1; col <= n; col++) {
+                    int cell = matrix.index(row, col);
+                    if(matrix.getDistrictNumber(cell) != d) {
+                        continue;
+                    }
+                    size++;
+                    for (int direction = 1; direction <= 4; direction++) {
+                        if(matrix.getDistrictNumber(matrix.neighbor(cell, direction)) != d) {
+                            perimeter++;
+                        }
+                    }
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                    minCol = Math.min(minCol, col);
+                    maxCol = Math.max(maxCol, col);
+                    cells.add(cells.position(row - 1, col - 1));
+                }
+            }
+            assertEquals(size, matrix.districtSize(d));
+            assertEquals(perimeter, matrix.districtPerimeter(d));
+            if(size > 0) {
+                assertEquals(maxRow - minRow + 1, matrix.districtLength(d));
+                assertEquals(maxCol - minCol + 1, matrix.districtWidth(d));
+            }
+            if(matrix.isFlat()) {
+                RowBitboard tracked = new RowBitboard(n, n);
+                matrix.copyDistrictCells(d, tracked);
+                assertEquals(cells.toString(), tracked.toString());
+            }
+        }
+    }
+    
+    // builds a matrix that holds the districts of a result
+    private static SquaretopiaMatrix matrixOf(TrialResult result, boolean flat) {
+        int n = result.numberOfRows();
+        SquaretopiaMatrix matrix = new SquaretopiaMatrix(n + 2, n + 2, flat);
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                matrix.setDistrictNumber(matrix.index(row + 1, col + 1), result.districtNumber(row, col));
+            }
+        }
+        return matrix;
+    }
+    
+    @Test
+    public void BinaryResultSink_t0() throws IOException {
+        // partitions with scores, single districts without scores and district numbers above 255 read back as they were written
+        RandomStreams streams = RandomStreams.seeded(15);
+        CollectingResultSink written = new CollectingResultSink();
+        Partitioner.Partition(6, 30, PartitionOptions.DEFAULT.withStreams(streams).withSink(written));
+        WeightedUnboundedSingleDistricter.Partition(5, 30, 40, PartitionOptions.DEFAULT.withStreams(streams).withSink(written));
+        int[] wide = new int[300];
+        Arrays.setAll(wide, k -> k + 1);
+        written.accept(new TrialResult(7, 1, 300, wide, null));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryResultSink sink = new BinaryResultSink(bytes);
+        for (TrialResult result : written.results()) {
+            sink.accept(result);
+        }
+        sink.flush();
+        CollectingResultSink read = new CollectingResultSink();
+        assertEquals(written.results().size(), BinaryResultSink.read(new ByteArrayInputStream(bytes.toByteArray()), read));
+        List<TrialResult> expected = new ArrayList<>();
+        for (TrialResult result : written.results()) { // the log proposal is not written
+            int[] districts = new int[result.numberOfRows() * result.numberOfColumns()];
+            Arrays.setAll(districts, k -> result.districtNumber(k / result.numberOfColumns(), k % result.numberOfColumns()));
+            expected.add(new TrialResult(result.trialIndex(), result.numberOfRows(), result.numberOfColumns(), districts, result.scores()));
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameResults(expected.subList(i, i + 1), read.results().subList(i, i + 1), expected.get(i).trialIndex());
+        }
+        // a stream that ends in the middle of a result is an error, not a shorter run
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+        try {
+            BinaryResultSink.read(new ByteArrayInputStream(truncated), new CollectingResultSink());
+            fail("a truncated stream was read without an error");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void ScoreStatistics_t0() {
+        // statistics merged from uneven shards (some of them empty) match the statistics of a single pass over every score
+        SplittableRandom random = new SplittableRandom(16);
+        for (int run = 0; run < 20; run++) {
+            ScoreStatistics single = new ScoreStatistics();
+            ScoreStatistics[] shards = new ScoreStatistics[1 + random.nextInt(8)];
+            Arrays.setAll(shards, s -> new ScoreStatistics());
+            int numOfScores = random.nextInt(5000);
+            for (int k = 0; k < numOfScores; k++) {
+                double score = run % 2 == 0 ? random.nextDouble() : 0.3 + 1e-9 * random.nextDouble(); // nearly equal scores stress the variance
+                single.add(score);
+                shards[random.nextInt(shards.length)].add(score);
+            }
+            ScoreStatistics merged = new ScoreStatistics();
+            for (ScoreStatistics shard : shards) {
+                merged.merge(shard);
+            }
+            assertSameStatistics(single, merged);
+        }
+        // a ScoreAggregator fed by the workers of a runner, each into its own shard, matches one fed serially
+        ScoreAggregator serial = new ScoreAggregator();
+        ScoreAggregator parallel = new ScoreAggregator();
+        PartitionOptions options = PartitionOptions.DEFAULT.withStreams(RandomStreams.seeded(16));
+        Partitioner.Partition(5, 2000, options.withSink(serial));
+        try (ParallelTrialRunner runner = new ParallelTrialRunner(3)) {
+            Partitioner.Partition(5, 2000, options.withSink(parallel).withRunner(runner));
+        }
+        for (int metric = 0; metric < serial.metricNames().length; metric++) {
+            assertSameStatistics(serial.statistics(metric), parallel.statistics(metric));
+        }
+    }
+    
+    // checks that two ScoreStatistics summarize the same scores (up to the rounding of the order they were added in)
+    private static void assertSameStatistics(ScoreStatistics expected, ScoreStatistics actual) {
+        assertEquals(expected.count(), actual.count());
+        if(expected.count() == 0) {
+            return;
+        }
+        assertEquals(expected.min(), actual.min(), 0);
+        assertEquals(expected.max(), actual.max(), 0);
+        assertEquals(expected.mean(), actual.mean(), 1e-12);
+        assertEquals(expected.variance(), actual.variance(), 1e-12 * Math.max(expected.variance(), 1e-12));
+        for (int p = 0; p < ScoreStatistics.NUMBER_OF_BINS; p++) {
+            assertEquals(expected.histogramCount(p), actual.histogramCount(p));
+        }
+    }
+    
+    @Test
+    public void QuantileSketch_t0() throws IOException {
+        // a sketch merged from shards with their own seeds keeps the rank error of its quantiles within the documented 1.3% of the count,
+        // stays small, and reads back from a stream with the same quantiles
+        int numOfScores = 200000;
+        double[] scores = new double[numOfScores];
+        Arrays.setAll(scores, k -> (double) k / numOfScores); // score k has rank k / numOfScores
+        SplittableRandom random = new SplittableRandom(17);
+        for (int k = numOfScores - 1; k > 0; k--) { // the scores arrive in random order
+            int j = random.nextInt(k + 1);
+            double swap = scores[k];
+            scores[k] = scores[j];
+            scores[j] = swap;
+        }
+        QuantileSketch single = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY, 17);
+        QuantileSketch[] shards = new QuantileSketch[10];
+        for (int s = 0; s < shards.length; s++) {
+            shards[s] = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY, RandomStreams.seedFor(17, s));
+        }
+        for (int k = 0; k < numOfScores; k++) {
+            single.add(scores[k]);
+            shards[k % 7 == 0 ? 0 : random.nextInt(shards.length)].add(scores[k]); // shard 0 gets more scores than the others
+        }
+        QuantileSketch merged = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY, 18);
+        for (QuantileSketch shard : shards) {
+            merged.merge(shard);
+        }
+        for (QuantileSketch sketch : new QuantileSketch[] {single, merged}) {
+            assertEquals(numOfScores, sketch.count());
+            assertEquals(0, sketch.min(), 0);
+            assertEquals((numOfScores - 1.0) / numOfScores, sketch.max(), 0);
+            assertTrue(sketch.retained() < 10 * QuantileSketch.DEFAULT_ACCURACY);
+            for (int p = 1; p < 100; p++) {
+                double fraction = p / 100.0;
+                assertEquals(fraction, sketch.quantile(fraction), 0.013);
+                assertEquals(fraction, sketch.rank(fraction), 0.013);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        merged.write(new DataOutputStream(bytes));
+        QuantileSketch read = QuantileSketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(merged.count(), read.count());
+        for (int p = 0; p <= 100; p++) {
+            assertEquals(merged.quantile(p / 100.0), read.quantile(p / 100.0), 0);
+        }
+    }
+    
+    @Test
+    public void RestartSchedule_t0() {
+        // the Luby budgets follow the recursive definition of the sequence, the geometric budgets grow by the ratio, and both saturate
+        // at Long.MAX_VALUE instead of overflowing
+        long[] lubyStart = {1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, 1};
+        for (int attempt = 0; attempt < lubyStart.length; attempt++) {
+            assertEquals(3 * lubyStart[attempt], RestartSchedule.luby(3).budget(attempt));
+        }
+        for (int attempt = 0; attempt < 5000; attempt++) {
+            assertEquals(7 * luby(attempt + 1), RestartSchedule.luby(7).budget(attempt));
+            assertEquals(5, RestartSchedule.fixed(5).budget(attempt));
+            assertEquals(Long.MAX_VALUE, RestartSchedule.NONE.budget(attempt));
+        }
+        assertEquals(Long.MAX_VALUE, RestartSchedule.luby(Long.MAX_VALUE / 3).budget(6)); // the seventh budget, 4 units, would overflow
+        RestartSchedule geometric = RestartSchedule.geometric(10, 1.5);
+        long[] geometricStart = {10, 15, 22, 33, 50, 75};
+        for (int attempt = 0; attempt < geometricStart.length; attempt++) {
+            assertEquals(geometricStart[attempt], geometric.budget(attempt));
+        }
+        for (int attempt = 1; attempt < 200; attempt++) {
+            assertTrue(geometric.budget(attempt) >= geometric.budget(attempt - 1));
+        }
+        assertEquals(Long.MAX_VALUE, geometric.budget(200));
+        // samples drawn under a schedule that cuts off attempts are still valid partitions
+        Partitioner sampler = new Partitioner(6, BacktrackPolicy.FULL_RESTART, RandomStreams.seeded(20), RestartSchedule.luby(8));
+        for (int trial = 0; trial < 50; trial++) {
+            checkPartition(sampler.sample(trial), 6);
+        }
+        assertTrue(sampler.metrics().snapshot().attemptsCutOff() > 0);
+    }
+    
+    // determines the i-th term (counting from 1) of the Luby sequence from its definition: 2^(k-1) if i = 2^k - 1, otherwise the
+    // term i - 2^(k-1) + 1 of the sequence, for the k with 2^(k-1) <= i < 2^k - 1
+    private static long luby(int i) {
+        int k = 1;
+        while((1 << k) - 1 < i) {
+            k++;
+        }
+        if(i == (1 << k) - 1) {
+            return 1L << (k - 1);
+        }
+        return luby(i - (1 << (k - 1)) + 1);
+    }
+    
+    @Test
+    public void DistrictingEngine_t1() {
+        // pruning a claim that strands free cells only skips searches that validMap() would reject later, so the engine and the baseline
+        // recursion without pruning draw nothing but partitions of the 4 by 4 Squaretopia, and draw each of them about as often
+        int n = 4;
+        int numOfTrials = 20000;
+        Set<String> enumerated = new HashSet<>();
+        new PartitionEnumerator(n).enumerate(result -> enumerated.add(checkPartition(result, n)));
+        Partitioner partitioner = new Partitioner(n, BacktrackPolicy.FULL_RESTART, RandomStreams.seeded(7));
+        for (int trial = 0; trial < 1000; trial++) {
+            assertTrue(enumerated.contains(checkPartition(partitioner.sample(trial), n)));
+        }
+        for (double probability : new double[] {0, 80}) {
+            RandomStreams streams = RandomStreams.seeded(7);
+            WeightedPartitioner sampler = new WeightedPartitioner(n, probability, BacktrackPolicy.FULL_RESTART, streams);
+            Map<String, Integer> pruned = new HashMap<>();
+            Map<String, Integer> unpruned = new HashMap<>();
+            for (int trial = 0; trial < numOfTrials; trial++) {
+                pruned.merge(checkPartition(sampler.sample(trial), n), 1, Integer::sum);
+                int[] districts = weightedRecursion(n, probability, false, streams.forTrial(numOfTrials + trial), new double[1]);
+                unpruned.merge(checkPartition(new TrialResult(trial, n, n, districts, null), n), 1, Integer::sum);
+            }
+            assertTrue(enumerated.containsAll(pruned.keySet()));
+            assertTrue(enumerated.containsAll(unpruned.keySet()));
+            // two-sample chi-squared statistic of the counts, with at most 116 degrees of freedom (mean 116, standard deviation 15.2)
+            double chiSquared = 0;
+            for (String partition : enumerated) {
+                int a = pruned.getOrDefault(partition, 0);
+                int b = unpruned.getOrDefault(partition, 0);
+                if(a + b > 0) {
+                    chiSquared += (double) (a - b) * (a - b) / (a + b);
+                }
+            }
+            assertTrue("chi-squared " + chiSquared, chiSquared < 200);
+        }
+    }
+    
+    @Test
+    public void DistrictingEngine_t2() {
+        // a district that fails hands the cells of the districts before it back, and the next district must still be grown to n cells
+        BacktrackPolicy[] policies = {new BacktrackPolicy(1, 50), new BacktrackPolicy(3, 10)};
+        long backtracks = 0;
+        for (int n = 1; n <= 7; n++) {
+            for (BacktrackPolicy policy : policies) {
+                TrialSampler[] samplers = {new Partitioner(n, policy, RandomStreams.seeded(n)),
+                                           new WeightedPartitioner(n, 80, policy, RandomStreams.seeded(n))};
+                for (TrialSampler sampler : samplers) {
+                    for (int trial = 0; trial < 50; trial++) {
+                        checkPartition(sampler.sample(trial), n);
+                    }
+                    backtracks += sampler.metrics().snapshot().backtracks();
+                }
+            }
+        }
+        assertTrue(backtracks > 0);
+    }
+    
+    @Test
+    public void BitboardPartitioner_t0() {
+        // the long bitmask board gives the engine's search valid partitions of every size it fits, weighted or not, with districts
+        // returned by a backtracking policy and attempts cut off by a restart schedule
+        BacktrackPolicy[] policies = {BacktrackPolicy.FULL_RESTART, new BacktrackPolicy(1, 50)};
+        for (int n = 1; n <= BitboardPartitioner.MAX_SIZE; n++) {
+            for (BacktrackPolicy policy : policies) {
+                RandomStreams streams = RandomStreams.seeded(n);
+                TrialSampler[] samplers = {new BitboardPartitioner(n, policy, streams),
+                                           new BitboardPartitioner(n, 80, policy, streams),
+                                           new BitboardPartitioner(n, policy, streams, RestartSchedule.luby(n))};
+                for (TrialSampler sampler : samplers) {
+                    for (int trial = 0; trial < 50; trial++) {
+                        TrialResult result = sampler.sample(trial);
+                        checkPartition(result, n);
+                        assertTrue(result.logProposal() <= 0);
+                    }
+                }
+                assertTrue(n == 1 || samplers[2].metrics().snapshot().attemptsCutOff() > 0);
+            }
+        }
+        // every one of the 117 partitions of the 4 by 4 Squaretopia can be drawn
+        int n = 4;
+        Set<String> enumerated = new HashSet<>();
+        new PartitionEnumerator(n).enumerate(result -> enumerated.add(checkPartition(result, n)));
+        BitboardPartitioner sampler = new BitboardPartitioner(n, BacktrackPolicy.FULL_RESTART, RandomStreams.seeded(21));
+        Set<String> drawn = new HashSet<>();
+        for (int trial = 0; trial < 5000; trial++) {
+            drawn.add(checkPartition(sampler.sample(trial), n));
+        }
+        assertEquals(enumerated, drawn);
+    }
+    
+    // partitions an n by n Squaretopia the way the baseline WeightedPartitioner does, restarting the map whenever a district fails, but on
+    // the engine's cell sets so that the same draws pick the same cells, and returns the district number of every inner cell
+    // with prune false, claims are only rejected by validMap() once their district is complete, as in the baseline
+    // logProposal[0] is set to the log of the probability of every random draw of the accepted attempt
+    private static int[] weightedRecursion(int n, double probability, boolean prune, RandomGenerator random, double[] logProposal) {
+        SquaretopiaMatrix matrix = new SquaretopiaMatrix(n + 2, n + 2, true);
+        IndexedCellSet freeCells = matrix.generateIndexedSetOfFreeCells();
+        IndexedCellSet transitions = new IndexedCellSet(matrix.cellCount());
+        CellStack triedCells = new CellStack(matrix.cellCount());
+        int[] claimed = new int[1]; // number of cells in the district being grown
+        boolean valid = false;
+        while(valid == false) {
+            matrix.reset();
+            matrix.resetFreeCells(freeCells);
+            logProposal[0] = 0;
+            valid = true;
+            while(valid && freeCells.size() > 0) {
+                int firstCell = firstCellInBoth(matrix.cellsWithFreeNeighborCount(1), freeCells);
+                if(firstCell == -1) {
+                    logProposal[0] -= Math.log(freeCells.size());
+                    firstCell = freeCells.randomCell(random);
+                }
+                claimed[0] = 0;
+                claim(matrix, freeCells, firstCell, claimed);
+                if(prune == false || matrix.claimKeepsMapValid(firstCell, n, n - claimed[0])) {
+                    Map<Integer, Integer> directions = new HashMap<>();
+                    for(int mask = matrix.freeNeighborMask(firstCell); mask != 0; mask &= mask - 1) {
+                        int direction = Integer.numberOfTrailingZeros(mask) + 1;
+                        transitions.add(matrix.neighbor(firstCell, direction));
+                        directions.put(matrix.neighbor(firstCell, direction), direction);
+                    }
+                    valid = weightedLevel(matrix, freeCells, transitions, triedCells, directions, firstCell, claimed, probability / 100, prune, random,
+                                          logProposal);
+                } else {
+                    valid = false;
+                }
+                transitions.clear();
+                triedCells.clear();
+            }
+        }
+        int[] districts = new int[n * n];
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                districts[row * n + col] = matrix.getDistrictNumber(matrix.index(row + 1, col + 1));
+            }
+        }
+        return districts;
+    }
+    
+    // one level of the baseline recursion: directions holds the direction of every transition of this level relative to its parent
+    private static boolean weightedLevel(SquaretopiaMatrix matrix, IndexedCellSet freeCells, IndexedCellSet transitions, CellStack triedCells,
+                                         Map<Integer, Integer> directions, int recentCell, int[] claimed, double w, boolean prune,
+                                         RandomGenerator random, double[] logProposal) {
+        int n = matrix.numberOfRows() - 2;
+        if(claimed[0] == n) {
+            return matrix.validMap();
+        }
+        int triedCellsMark = triedCells.size();
+        while(transitions.size() != 0) {
+            int nextCell = firstCellInBoth(matrix.cellsWithFreeNeighborCount(0), transitions);
+            if(nextCell == -1) {
+                int direction = directions.getOrDefault(recentCell, -1);
+                int targetCell = direction == -1 ? -1 : matrix.neighbor(recentCell, direction);
+                if(targetCell == -1 || transitions.contains(targetCell) == false) {
+                    logProposal[0] -= Math.log(transitions.size());
+                    nextCell = transitions.randomCell(random);
+                } else if(transitions.size() == 1) {
+                    nextCell = targetCell;
+                } else if(random.nextDouble() < w) {
+                    logProposal[0] += Math.log(w);
+                    nextCell = targetCell;
+                } else {
+                    logProposal[0] += Math.log((1 - w) / (transitions.size() - 1));
+                    nextCell = transitions.get(random.nextInt(transitions.size() - 1));
+                    if(nextCell == targetCell) {
+                        nextCell = transitions.get(transitions.size() - 1);
+                    }
+                }
+            }
+            claim(matrix, freeCells, nextCell, claimed);
+            transitions.remove(nextCell);
+            triedCells.push(nextCell);
+            if(prune && matrix.claimKeepsMapValid(nextCell, n, n - claimed[0]) == false) {
+                unclaim(matrix, freeCells, nextCell, claimed);
+                continue;
+            }
+            Map<Integer, Integer> deeperDirections = new HashMap<>(directions);
+            int added = 0;
+            for(int mask = matrix.freeNeighborMask(nextCell); mask != 0; mask &= mask - 1) {
+                int direction = Integer.numberOfTrailingZeros(mask) + 1;
+                int neighbor = matrix.neighbor(nextCell, direction);
+                if(transitions.contains(neighbor) == false) {
+                    added |= 1 << (direction - 1);
+                    deeperDirections.put(neighbor, direction);
+                }
+            }
+            for(int mask = added; mask != 0; mask &= mask - 1) {
+                transitions.add(matrix.neighbor(nextCell, Integer.numberOfTrailingZeros(mask) + 1));
+            }
+            if(weightedLevel(matrix, freeCells, transitions, triedCells, deeperDirections, nextCell, claimed, w, prune, random, logProposal)) {
+                return true;
+            }
+            unclaim(matrix, freeCells, nextCell, claimed);
+            for(int mask = added; mask != 0; mask &= mask - 1) {
+                transitions.remove(matrix.neighbor(nextCell, Integer.numberOfTrailingZeros(mask) + 1));
+            }
+        }
+        while(triedCells.size() > triedCellsMark) {
+            transitions.add(triedCells.pop());
+        }
+        return false;
+    }
+    
+    private static void claim(SquaretopiaMatrix matrix, IndexedCellSet freeCells, int cell, int[] claimed) {
+        int n = matrix.numberOfRows() - 2;
+        freeCells.remove(cell);
+        matrix.setDistrictNumber(cell, (int) Math.ceil(Double.valueOf(n * n - freeCells.size()) / n));
+        matrix.setChecked(cell, true);
+        claimed[0]++;
+    }
+    
+    private static void unclaim(SquaretopiaMatrix matrix, IndexedCellSet freeCells, int cell, int[] claimed) {
+        freeCells.add(cell);
+        matrix.setDistrictNumber(cell, 0);
+        matrix.setChecked(cell, false);
+        claimed[0]--;
+    }
+    
+    // returns a cell of some bucket of free cells that is also in a given set (-1 if there is none)
+    private static int firstCellInBoth(IndexedCellSet bucket, IndexedCellSet set) {
+        for(int i = 0; i < bucket.size(); i++) {
+            if(set.contains(bucket.get(i))) {
+                return bucket.get(i);
+            }
+        }
+        return -1;
+    }
+    
+    // checks that every district of a partition has n cells and passes validMap() on its own, and returns the partition's districts,
+    // renumbered in order of their first cells, as a string that is the same for every numbering of the same partition
+    private static String checkPartition(TrialResult result, int n) {
+        assertEquals(n, result.numberOfRows());
+        assertEquals(n, result.numberOfColumns());
+        int[] renumbered = new int[n + 1];
+        int numOfDistricts = 0;
+        StringBuilder partition = new StringBuilder();
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) {
+                int district = result.districtNumber(row, col);
+                assertTrue(district >= 1 && district <= n);
+                if(renumbered[district] == 0) {
+                    renumbered[district] = ++numOfDistricts;
+                }
+                partition.append(renumbered[district]);
+            }
+        }
+        assertEquals(n, numOfDistricts);
+        for (int district = 1; district <= n; district++) {
+            // only the district's cells are left unchecked, so validMap() fails when they split into groups of fewer than n cells
+            SquaretopiaMatrix matrix = new SquaretopiaMatrix(n + 2, n + 2, true);
+            int cells = 0;
+            for (int row = 0; row < n; row++) {
+                for (int col = 0; col < n; col++) {
+                    boolean inDistrict = result.districtNumber(row, col) == district;
+                    matrix.setChecked(matrix.index(row + 1, col + 1), inDistrict == false);
+                    cells += inDistrict ? 1 : 0;
+                }
+            }
+            assertEquals(n, cells);
+            assertTrue(matrix.validMap());
+        }
+        return partition.toString();
+    }
+    
+    // the positions of the cells of a region that a rook chess piece can reach from a start cell, found one cell at a time
+    private static Set<Integer> breadthFirstSearch(RowBitboard region, int start) {
+        Set<Integer> reached = new HashSet<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        reached.add(start);
+        queue.add(start);
+        while(queue.isEmpty() == false) {
+            int position = queue.poll();
+            int r = region.row(position);
+            int c = region.col(position);
+            int[][] sides = {{r - 1, c}, {r + 1, c}, {r, c - 1}, {r, c + 1}};
+            for (int[] side : sides) {
+                if(side[0] >= 0 && side[0] < region.rows() && side[1] >= 0 && side[1] < region.columns()) {
+                    int neighbor = region.position(side[0], side[1]);
+                    if(region.contains(neighbor) && reached.add(neighbor)) {
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+        return reached;
     }
     
 }
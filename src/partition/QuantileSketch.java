@@ -0,0 +1,367 @@
+package partition;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * QuantileSketch.java
+ * QuantileSketch estimates the quantiles of a stream of scores in a few kilobytes, no matter how long the stream is. It is a KLL sketch
+ * (Karnin, Lang and Liberty, "Optimal Quantile Approximation in Streams"): scores are kept in a stack of compactors, where a score in
+ * compactor h stands for 2^h scores of the stream. When a compactor is full it is sorted, and every other score (starting at a random
+ * offset) is promoted to the next compactor while the rest are thrown away.
+ * Sketches of separate runs can be merged into one sketch of all their scores, which is as accurate as a sketch of a single run, and
+ * they can be written to and read from a stream, so studies can be sharded across processes and machines (see ScoreSketches).
+ * NOTE: With the default accuracy of 200, the rank of an estimated quantile is off by about 1.3% of the count at most, with high probability.
+ * NOTE: Every sketch draws its compaction offsets from its own seed. Sketches that will be merged must not share a seed, or their
+ * rounding errors line up instead of cancelling out and the error bound no longer holds (see ScoreAggregator, which seeds every shard
+ * with RandomStreams.seedFor()).
+ * NOTE: A QuantileSketch is not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_ACCURACY = 200; // capacity of the top compactor (k)
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0; // each compactor below the top holds 2/3 as many scores as the one above it
+    private static final int MIN_CAPACITY = 2;             // smallest capacity of a compactor
+
+    private final int accuracy;         // capacity of the top compactor (k)
+    private final long seed;            // seed of random, so the same scores in the same order always give the same sketch
+    private double[][] compactors;      // compactors[h] holds scores of weight 2^h in its first sizes[h] entries
+    private int[] sizes;                // sizes[h] is the number of scores in compactor h
+    private int numOfCompactors;        // number of compactors in use
+    private int retained;               // number of scores held across all compactors
+    private int maxRetained;            // sum of the capacities of the compactors in use
+    private long count;                 // number of scores added
+    private double min;                 // smallest score added
+    private double max;                 // largest score added
+    private final SplittableRandom random; // decides the offset of every compaction
+
+    /**
+     * Constructs an empty sketch with the default accuracy and a seed chosen at random.
+     * @return void
+     */
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY);
+    }
+
+    /**
+     * Constructs an empty sketch with a seed chosen at random.
+     * @param accuracy Integer capacity of the top compactor (k); the rank error shrinks like 1/accuracy, the size grows like accuracy
+     * @return void
+     */
+    public QuantileSketch(int accuracy) {
+        this(accuracy, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructs an empty sketch that can be reproduced.
+     * NOTE: Sketches that will be merged need different seeds (see RandomStreams.seedFor()).
+     * @param accuracy Integer capacity of the top compactor (k); the rank error shrinks like 1/accuracy, the size grows like accuracy
+     * @param seed Long seed of the compaction offsets
+     * @return void
+     */
+    public QuantileSketch(int accuracy, long seed) {
+        this(accuracy, seed, seed);
+    }
+
+    // constructs an empty sketch that reports a seed but draws its compaction offsets from another seed (see read())
+    private QuantileSketch(int accuracy, long seed, long randomSeed) {
+        if(accuracy < MIN_CAPACITY) {
+            throw new IllegalArgumentException("accuracy must be at least " + MIN_CAPACITY);
+        }
+        this.accuracy = accuracy;
+        this.compactors = new double[1][];
+        this.sizes = new int[1];
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        this.seed = seed;
+        this.random = new SplittableRandom(randomSeed);
+        addCompactor();
+    }
+
+    // the capacity of compactor h while numOfCompactors compactors are in use
+    private int capacity(int h) {
+        int depth = numOfCompactors - h - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(accuracy * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    // adds an empty compactor on top of the stack and recomputes the capacities
+    private void addCompactor() {
+        if(numOfCompactors == compactors.length) {
+            compactors = Arrays.copyOf(compactors, numOfCompactors * 2);
+            sizes = Arrays.copyOf(sizes, numOfCompactors * 2);
+        }
+        compactors[numOfCompactors] = new double[0];
+        sizes[numOfCompactors] = 0;
+        numOfCompactors++;
+        maxRetained = 0;
+        for (int h = 0; h < numOfCompactors; h++) {
+            maxRetained += capacity(h);
+        }
+    }
+
+    // appends a score to compactor h
+    private void append(int h, double score) {
+        if(sizes[h] == compactors[h].length) {
+            compactors[h] = Arrays.copyOf(compactors[h], Math.max(capacity(h) + 1, sizes[h] * 2));
+        }
+        compactors[h][sizes[h]++] = score;
+        retained++;
+    }
+
+    /**
+     * Adds a score to this sketch.
+     * @param score Double score
+     * @return void
+     */
+    public void add(double score) {
+        count++;
+        min = Math.min(min, score);
+        max = Math.max(max, score);
+        append(0, score);
+        if(retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds every score summarized by another sketch to this sketch.
+     * NOTE: The sketches should have the same accuracy; the merged sketch keeps the accuracy of this sketch.
+     * @param other QuantileSketch that we will merge into this sketch (it is not changed)
+     * @return void
+     */
+    public void merge(QuantileSketch other) {
+        if(other.count == 0) {
+            return;
+        }
+        while(numOfCompactors < other.numOfCompactors) {
+            addCompactor();
+        }
+        for (int h = 0; h < other.numOfCompactors; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.compactors[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        while(retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    // compacts the lowest full compactor, and the ones above it while the sketch is still too large
+    private void compress() {
+        for (int h = 0; h < numOfCompactors; h++) {
+            if(sizes[h] >= capacity(h)) {
+                if(h + 1 == numOfCompactors) {
+                    addCompactor();
+                }
+                compact(h);
+                if(retained < maxRetained) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // sorts compactor h and promotes every other score to compactor h + 1, keeping the largest score if the count is odd
+    private void compact(int h) {
+        double[] scores = compactors[h];
+        int size = sizes[h];
+        Arrays.sort(scores, 0, size);
+        int pairs = size / 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int p = 0; p < pairs; p++) {
+            append(h + 1, scores[2 * p + offset]);
+        }
+        retained -= 2 * pairs;
+        if(size % 2 == 1) {
+            scores[0] = scores[size - 1];
+        }
+        sizes[h] = size % 2;
+    }
+
+    /**
+     * @return Long number of scores added
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return Double smallest score added (positive infinity if there are none)
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return Double largest score added (negative infinity if there are none)
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * @return Long seed that this sketch was constructed with
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * @return Integer number of scores held by this sketch, which bounds its size in memory and on disk
+     */
+    public int retained() {
+        return retained;
+    }
+
+    /**
+     * Estimates the fraction of scores that are at most a given score.
+     * @param score Double score
+     * @return Double estimated rank of the score, between 0 and 1 (0 if the sketch is empty)
+     */
+    public double rank(double score) {
+        if(count == 0) {
+            return 0;
+        }
+        long weightAtMost = 0;
+        for (int h = 0; h < numOfCompactors; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if(compactors[h][i] <= score) {
+                    weightAtMost += 1L << h;
+                }
+            }
+        }
+        return (double) weightAtMost / totalWeight();
+    }
+
+    /**
+     * Estimates a quantile of the scores.
+     * @param fraction Double fraction of the scores that should be at most the quantile, where 0 <= fraction <= 1
+     * @return Double estimated quantile (NaN if the sketch is empty)
+     */
+    public double quantile(double fraction) {
+        if(fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+        }
+        if(count == 0) {
+            return Double.NaN;
+        }
+        if(fraction == 0) {
+            return min;
+        }
+        if(fraction == 1) {
+            return max;
+        }
+        double[] scores = new double[retained];
+        long[] weights = new long[retained];
+        sortedScores(scores, weights);
+        double target = fraction * totalWeight();
+        long cumulativeWeight = 0;
+        for (int i = 0; i < retained; i++) {
+            cumulativeWeight += weights[i];
+            if(cumulativeWeight >= target) {
+                return scores[i];
+            }
+        }
+        return max;
+    }
+
+    // fills scores and weights with every retained score and its weight, sorted by score
+    private void sortedScores(double[] scores, long[] weights) {
+        Integer[] order = new Integer[retained];
+        int n = 0;
+        for (int h = 0; h < numOfCompactors; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                scores[n] = compactors[h][i];
+                weights[n] = 1L << h;
+                order[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+        double[] unsortedScores = scores.clone();
+        long[] unsortedWeights = weights.clone();
+        for (int i = 0; i < n; i++) {
+            scores[i] = unsortedScores[order[i]];
+            weights[i] = unsortedWeights[order[i]];
+        }
+    }
+
+    // the total weight of the retained scores, which equals count() up to the scores dropped by compactions
+    private long totalWeight() {
+        long weight = 0;
+        for (int h = 0; h < numOfCompactors; h++) {
+            weight += (long) sizes[h] << h;
+        }
+        return weight;
+    }
+
+    /**
+     * Writes this sketch to a stream (see read()).
+     * @param out DataOutput we will write to
+     * @return void
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(accuracy);
+        out.writeLong(seed);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(numOfCompactors);
+        for (int h = 0; h < numOfCompactors; h++) {
+            out.writeInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; i++) {
+                out.writeDouble(compactors[h][i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a sketch written by write().
+     * NOTE: The sketch keeps its seed, but draws its next compaction offsets from a seed derived from its seed and count, so that it does
+     * not repeat the offsets of the sketch that was written.
+     * @param in DataInput we will read from
+     * @return QuantileSketch that was written
+     * @throws IOException if the stream cannot be read or does not hold a sketch
+     */
+    public static QuantileSketch read(DataInput in) throws IOException {
+        int accuracy = in.readInt();
+        if(accuracy < MIN_CAPACITY) {
+            throw new IOException("not a quantile sketch (accuracy " + accuracy + ")");
+        }
+        long seed = in.readLong();
+        long count = in.readLong();
+        QuantileSketch sketch = new QuantileSketch(accuracy, seed, RandomStreams.seedFor(seed, (int) (count ^ (count >>> 32))));
+        sketch.count = count;
+        sketch.min = in.readDouble();
+        sketch.max = in.readDouble();
+        int numOfCompactors = in.readInt();
+        if(numOfCompactors < 1 || numOfCompactors > Long.SIZE) {
+            throw new IOException("not a quantile sketch (" + numOfCompactors + " compactors)");
+        }
+        while(sketch.numOfCompactors < numOfCompactors) {
+            sketch.addCompactor();
+        }
+        for (int h = 0; h < numOfCompactors; h++) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                sketch.append(h, in.readDouble());
+            }
+        }
+        return sketch;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " min=" + min + " p10=" + quantile(0.1) + " p25=" + quantile(0.25) + " median=" + quantile(0.5)
+             + " p75=" + quantile(0.75) + " p90=" + quantile(0.9) + " max=" + max;
+    }
+
+}
@@ -0,0 +1,64 @@
+package partition;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * RandomStreams.java
+ * RandomStreams hands every trial of a run the random number generator it draws from. With seeded streams, trial i always draws from
+ * a generator that only depends on the run's seed and i, so any trial of a run can be regenerated on its own, no matter how many
+ * threads ran it or in which order the trials were run:
+ *     new Partitioner(size, policy, RandomStreams.seeded(seed)).sample(i)
+ * NOTE: Seeded streams hold no mutable state, so one RandomStreams may be shared by every worker of a ParallelTrialRunner.
+ */
+@FunctionalInterface
+public interface RandomStreams {
+
+    /**
+     * @param trialIndex Integer index of some trial
+     * @return RandomGenerator that the trial will draw from
+     */
+    RandomGenerator forTrial(int trialIndex);
+
+    /**
+     * Creates streams in which trial i draws from a SplittableRandom seeded with seedFor(seed, i).
+     * @param seed Long seed of the run
+     * @return RandomStreams that regenerate the same trials whenever they are given the same seed
+     */
+    static RandomStreams seeded(long seed) {
+        return trialIndex -> new SplittableRandom(seedFor(seed, trialIndex));
+    }
+
+    /**
+     * Creates seeded streams with a seed chosen at random, for runs that do not need to be reproduced.
+     * @return RandomStreams seeded with a random seed
+     */
+    static RandomStreams unseeded() {
+        return seeded(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates streams in which every trial draws from the same generator, for callers that want to inject their own generator.
+     * NOTE: Trials can then only be reproduced by rerunning them in the same order, and the generator must only be used by one thread
+     * at a time, so these streams must not be shared by the workers of a ParallelTrialRunner.
+     * @param random RandomGenerator that every trial will draw from
+     * @return RandomStreams backed by that generator
+     */
+    static RandomStreams shared(RandomGenerator random) {
+        return trialIndex -> random;
+    }
+
+    /**
+     * Derives the seed of a trial from the seed of its run with the SplitMix64 finalizer, so that neighboring trials get unrelated seeds.
+     * @param seed Long seed of the run
+     * @param trialIndex Integer index of the trial
+     * @return Long seed of the trial's generator
+     */
+    static long seedFor(long seed, int trialIndex) {
+        long z = seed + (trialIndex + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
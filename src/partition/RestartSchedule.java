@@ -0,0 +1,121 @@
+package partition;
+
+/**
+ * RestartSchedule.java
+ * RestartSchedule gives every attempt at a sample a work budget, counted in cells claimed by the DistrictingEngine (claims that are
+ * undone again still count). An attempt that runs out of budget is cut off and the sampler starts a fresh attempt, with the budget
+ * of the next attempt in the schedule. The time the backtracking search needs has a heavy tail, so cutting off the rare attempts that
+ * wander into a hopeless corner and starting over is much faster than waiting for them to finish.
+ * The Luby schedule (unit times 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ...) is within a constant factor of the best fixed budget without
+ * knowing it in advance. The geometric schedule multiplies the budget by a ratio after every restart, so it never needs more than a
+ * few restarts but spends more on every one of them.
+ * NOTE: Cutting off slow attempts favors the maps that are quick to find, so the samples are not distributed exactly like those
+ * produced without a schedule (see NONE).
+ */
+public final class RestartSchedule {
+
+    public static final RestartSchedule NONE = new RestartSchedule(Kind.NONE, Long.MAX_VALUE, 1); // every attempt runs until it succeeds or fails
+
+    private enum Kind { NONE, FIXED, LUBY, GEOMETRIC }
+
+    private final Kind kind;     // shape of the schedule
+    private final long unit;     // budget of the first attempt (the unit of the Luby sequence)
+    private final double ratio;  // factor between the budgets of consecutive attempts (only used by geometric schedules)
+
+    private RestartSchedule(Kind kind, long unit, double ratio) {
+        this.kind = kind;
+        this.unit = unit;
+        this.ratio = ratio;
+    }
+
+    /**
+     * Creates a schedule that gives every attempt the same budget.
+     * @param budget Long number of cells an attempt may claim (at least 1)
+     * @return RestartSchedule with a fixed budget
+     */
+    public static RestartSchedule fixed(long budget) {
+        requirePositive(budget);
+        return new RestartSchedule(Kind.FIXED, budget, 1);
+    }
+
+    /**
+     * Creates a schedule whose budgets follow the Luby sequence: unit times 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+     * @param unit Long number of cells the first attempt may claim (at least 1)
+     * @return RestartSchedule following the Luby sequence
+     */
+    public static RestartSchedule luby(long unit) {
+        requirePositive(unit);
+        return new RestartSchedule(Kind.LUBY, unit, 1);
+    }
+
+    /**
+     * Creates a schedule whose budgets grow geometrically: initialBudget times 1, ratio, ratio^2, ...
+     * @param initialBudget Long number of cells the first attempt may claim (at least 1)
+     * @param ratio Double factor between the budgets of consecutive attempts (greater than 1)
+     * @return RestartSchedule with geometrically growing budgets
+     */
+    public static RestartSchedule geometric(long initialBudget, double ratio) {
+        requirePositive(initialBudget);
+        if((ratio > 1) == false) {
+            throw new IllegalArgumentException("ratio must be greater than 1");
+        }
+        return new RestartSchedule(Kind.GEOMETRIC, initialBudget, ratio);
+    }
+
+    // rejects budgets that would cut off every attempt
+    private static void requirePositive(long budget) {
+        if(budget < 1) {
+            throw new IllegalArgumentException("budget must be at least 1");
+        }
+    }
+
+    /**
+     * @param attempt Integer number of attempts made before this one in the current trial (0 for the first attempt)
+     * @return Long number of cells the attempt may claim (Long.MAX_VALUE if it is not limited)
+     */
+    public long budget(int attempt) {
+        switch(kind) {
+            case FIXED:
+                return unit;
+            case LUBY:
+                return saturatedMultiply(unit, luby(attempt + 1));
+            case GEOMETRIC:
+                double budget = unit * Math.pow(ratio, attempt);
+                return budget >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) budget;
+            default:
+                return Long.MAX_VALUE;
+        }
+    }
+
+    // determines the i-th term (counting from 1) of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+    private static long luby(int i) {
+        long term = i;
+        while(true) {
+            int k = Long.SIZE - Long.numberOfLeadingZeros(term); // smallest k with term <= 2^k - 1
+            if(term == (1L << k) - 1) {
+                return 1L << (k - 1);
+            }
+            term -= (1L << (k - 1)) - 1; // the sequence repeats itself after each 2^(k-1) - 1 terms
+        }
+    }
+
+    // multiplies two positive numbers, returning Long.MAX_VALUE instead of overflowing
+    private static long saturatedMultiply(long a, long b) {
+        return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+
+    @Override
+    public String toString() {
+        switch(kind) {
+            case FIXED:
+                return "fixed budget of " + unit + " claims";
+            case LUBY:
+                return "Luby restarts, unit of " + unit + " claims";
+            case GEOMETRIC:
+                return "geometric restarts from " + unit + " claims, ratio " + ratio;
+            default:
+                return "no restarts";
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package partition;
+
+/**
+ * ResultSink.java
+ * ResultSink receives the results of the trials of a Partition call, in trial order. The Partition methods write every result to a
+ * sink and flush it once all trials are done, so where the results go (the console, a file, memory or nowhere) is up to the caller.
+ * NOTE: Results are handed to a sink on the thread that called Partition, even when a ParallelTrialRunner runs the trials, so a sink
+ * does not have to be thread-safe unless it says it is (see isThreadSafe()).
+ */
+@FunctionalInterface
+public interface ResultSink {
+
+    /**
+     * Receives the result of one trial.
+     * @param result TrialResult of the trial
+     * @return void
+     */
+    void accept(TrialResult result);
+
+    /**
+     * Writes out anything this sink has buffered. The Partition methods call this once after their last trial.
+     * @return void
+     */
+    default void flush() {
+    }
+
+    /**
+     * Determines if this sink may be handed results by several threads at once, in any order. A ParallelTrialRunner then hands results
+     * to the sink straight from its workers instead of collecting them into batches and handing them over in trial order.
+     * @return Boolean value for the statement: This sink accepts results from any thread, in any order.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Creates a sink that throws every result away, for timing the samplers on their own.
+     * @return ResultSink that ignores its results
+     */
+    static ResultSink discard() {
+        return new ResultSink() {
+            @Override
+            public void accept(TrialResult result) {
+            }
+
+            @Override
+            public boolean isThreadSafe() {
+                return true;
+            }
+        };
+    }
+
+}
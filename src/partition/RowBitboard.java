@@ -0,0 +1,361 @@
+package partition;
+
+/**
+ * RowBitboard.java
+ * RowBitboard is a set of cells of a rows by columns grid stored as a row-aligned bitboard: every row starts on a fresh 64-bit word
+ * and takes ceil(columns / 64) words, so a row of any length is a short run of words, and the row above or below a word is always
+ * wordsPerRow words away. Cells are addressed by their position, row * 64 * wordsPerRow + column (see position()).
+ * Flood fills and perimeters work on whole words at a time: a word of a row is filled along its runs of cells with one addition,
+ * and the rows above and below are reached with a single AND, so connectivity checks cost a few operations per word instead of a
+ * few operations per cell. This is what keeps validMap() cheap on the large grids (n = 32 to 64) that the SquaretopiaCell flood fill
+ * could not handle.
+ * NOTE: The grid has no padding layer. SquaretopiaMatrix maps its inner cell (i, j) to row i - 1 and column j - 1.
+ */
+public final class RowBitboard {
+
+    private final int rows;         // number of rows in the grid
+    private final int columns;      // number of columns in the grid
+    private final int wordsPerRow;  // number of words that hold one row
+    private final int fillSteps;    // number of doubling shifts that carry a cell down through a run as long as a row (at most 6 for a whole word)
+    private final long[] words;     // bit (position % 64) of words[position / 64] is set when the cell at that position is in this set
+
+    /**
+     * Constructs an empty set of cells of a rows by columns grid.
+     * @param rows Integer number of rows in the grid
+     * @param columns Integer number of columns in the grid
+     * @return void
+     */
+    public RowBitboard(int rows, int columns) {
+        if(rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("a grid cannot have " + rows + " rows and " + columns + " columns");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.wordsPerRow = Math.max((columns + 63) >>> 6, 1);
+        this.fillSteps = 32 - Integer.numberOfLeadingZeros(Math.min(Math.max(columns, 1), 64) - 1);
+        this.words = new long[rows * wordsPerRow];
+    }
+
+    /**
+     * Constructs a copy of another set.
+     * @param other RowBitboard that we will copy
+     * @return void
+     */
+    public RowBitboard(RowBitboard other) {
+        this.rows = other.rows;
+        this.columns = other.columns;
+        this.wordsPerRow = other.wordsPerRow;
+        this.fillSteps = other.fillSteps;
+        this.words = other.words.clone();
+    }
+
+    /**
+     * @return Integer number of rows in the grid
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * @return Integer number of columns in the grid
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @param row Integer row of some cell, where 0 <= row < rows()
+     * @param col Integer column of the cell, where 0 <= col < columns()
+     * @return Integer position of the cell in this bitboard
+     */
+    public int position(int row, int col) {
+        return ((row * wordsPerRow) << 6) + col;
+    }
+
+    /**
+     * @param position Integer position of some cell (see position())
+     * @return Integer row of the cell
+     */
+    public int row(int position) {
+        return (position >>> 6) / wordsPerRow;
+    }
+
+    /**
+     * @param position Integer position of some cell (see position())
+     * @return Integer column of the cell
+     */
+    public int col(int position) {
+        return position - ((row(position) * wordsPerRow) << 6);
+    }
+
+    /**
+     * @param position Integer position of some cell (see position())
+     * @return Boolean value for the statement: This set contains the cell.
+     */
+    public boolean contains(int position) {
+        return (words[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * Adds a cell to this set.
+     * @param position Integer position of the cell we will add (see position())
+     * @return void
+     */
+    public void add(int position) {
+        words[position >>> 6] |= 1L << position;
+    }
+
+    /**
+     * Removes a cell from this set.
+     * @param position Integer position of the cell we will remove (see position())
+     * @return void
+     */
+    public void remove(int position) {
+        words[position >>> 6] &= ~(1L << position);
+    }
+
+    /**
+     * @return Integer number of cells in this set
+     */
+    public int size() {
+        int size = 0;
+        for(int i = 0; i < words.length; i++) {
+            size += Long.bitCount(words[i]);
+        }
+        return size;
+    }
+
+    /**
+     * @return Boolean value for the statement: This set contains no cells.
+     */
+    public boolean isEmpty() {
+        for(int i = 0; i < words.length; i++) {
+            if(words[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes every cell from this set.
+     * @return void
+     */
+    public void clear() {
+        for(int i = 0; i < words.length; i++) {
+            words[i] = 0;
+        }
+    }
+
+    /**
+     * Makes this set a copy of another set.
+     * NOTE: Both sets must belong to grids of the same size.
+     * @param other RowBitboard that we will copy
+     * @return void
+     */
+    public void copyFrom(RowBitboard other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    /**
+     * Removes every cell of another set from this set (set difference).
+     * NOTE: Both sets must belong to grids of the same size.
+     * @param other RowBitboard whose cells we will remove
+     * @return void
+     */
+    public void removeAll(RowBitboard other) {
+        for(int i = 0; i < words.length; i++) {
+            words[i] &= ~other.words[i];
+        }
+    }
+
+    /**
+     * Finds the cell of this set that comes first row by row.
+     * @param fromPosition Integer position to start searching from
+     * @return Integer position of the first cell at or after fromPosition (-1 if there is none)
+     */
+    public int nextCell(int fromPosition) {
+        int wordIndex = fromPosition >>> 6;
+        if(wordIndex >= words.length) {
+            return -1;
+        }
+        long word = words[wordIndex] & (-1L << fromPosition);
+        while(true) {
+            if(word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            wordIndex++;
+            if(wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+
+    /**
+     * Makes this set the group of cells of a region that a rook chess piece can reach when starting from a given cell of the region.
+     * Each row of the group is grown from the group's cells in the rows above and below it, and then filled along its runs of region
+     * cells one word at a time. The rows are swept downwards and upwards in turn, and only between the group's first and last rows,
+     * until a sweep leaves the group unchanged.
+     * NOTE: The start cell must be in the region, and both sets must belong to grids of the same size.
+     * @param region RowBitboard whose cells the group may contain
+     * @param start Integer position of the cell we start from (see position())
+     * @return Integer number of cells in the group, including the start cell
+     */
+    public int fillComponent(RowBitboard region, int start) {
+        clear();
+        words[start >>> 6] = 1L << start;
+        if(wordsPerRow == 1) { // fillSingleWordRow() expects every row to hold whole runs already
+            words[start >>> 6] = runsThrough(region.words[start >>> 6], 1L << start);
+        }
+        int firstRow = row(start);
+        int lastRow = firstRow;
+        boolean downwards = true;
+        boolean grew = true;
+        while(grew) {
+            grew = false;
+            if(downwards) {
+                for(int r = Math.max(firstRow - 1, 0); r <= lastRow + 1 && r < rows; r++) {
+                    if(fillRow(region, r)) {
+                        grew = true;
+                        firstRow = Math.min(firstRow, r);
+                        lastRow = Math.max(lastRow, r);
+                    }
+                }
+            } else {
+                for(int r = Math.min(lastRow + 1, rows - 1); r >= firstRow - 1 && r >= 0; r--) {
+                    if(fillRow(region, r)) {
+                        grew = true;
+                        firstRow = Math.min(firstRow, r);
+                        lastRow = Math.max(lastRow, r);
+                    }
+                }
+            }
+            downwards = downwards == false;
+        }
+        int size = 0;
+        for(int i = firstRow * wordsPerRow; i < (lastRow + 1) * wordsPerRow; i++) {
+            size += Long.bitCount(words[i]);
+        }
+        return size;
+    }
+
+    // adds to row r every region cell that is in the same run of region cells as a cell of this set in row r, r - 1 or r + 1,
+    // and returns true when row r changed
+    private boolean fillRow(RowBitboard region, int r) {
+        if(wordsPerRow == 1) {
+            return fillSingleWordRow(region, r);
+        }
+        int first = r * wordsPerRow;
+        int last = first + wordsPerRow - 1;
+        long[] mask = region.words;
+        boolean changed = false;
+        long carry = 0; // 1 when the filled run reaches the top bit of the previous word and continues into this one
+        for(int i = first; i <= last; i++) {
+            long m = mask[i];
+            long seeds = words[i] | carry;
+            if(r > 0) {
+                seeds |= words[i - wordsPerRow];
+            }
+            if(r < rows - 1) {
+                seeds |= words[i + wordsPerRow];
+            }
+            seeds &= m;
+            // adding the seeds to the mask carries each seed up through its run, which flips exactly the run above the lowest seed
+            long filled = (((m + seeds) ^ m) & m) | seeds;
+            carry = filled >>> 63;
+            if(filled != words[i]) {
+                words[i] = filled;
+                changed = true;
+            }
+        }
+        carry = 0; // now 1 when the filled run reaches the bottom bit of the next word and continues into this one
+        for(int i = last; i >= first; i--) {
+            long run = mask[i];
+            long filled = words[i] | ((carry << 63) & run);
+            // carries do not run downwards, so the filled cells are instead shifted down through the run by 1, 2, 4, ... columns,
+            // where run keeps the cells whose next 1, 2, 4, ... cells below them are all in the mask
+            for(int step = 0, shift = 1; step < fillSteps; step++, shift <<= 1) {
+                filled |= run & (filled >>> shift);
+                run &= run >>> shift;
+            }
+            carry = filled & 1;
+            if(filled != words[i]) {
+                words[i] = filled;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // fillRow() for grids of at most 64 columns, where every row is a single word and no carries cross words
+    private boolean fillSingleWordRow(RowBitboard region, int r) {
+        long m = region.words[r];
+        long seeds = words[r];
+        if(r > 0) {
+            seeds |= words[r - 1];
+        }
+        if(r < rows - 1) {
+            seeds |= words[r + 1];
+        }
+        seeds &= m;
+        if(seeds == words[r]) {
+            return false; // the row already holds whole runs, and no new run is reached from above or below
+        }
+        words[r] = runsThrough(m, seeds);
+        return true;
+    }
+
+    // fills a single word along its runs of mask cells: the runs that contain a seed are returned whole
+    private long runsThrough(long mask, long seeds) {
+        long filled = (((mask + seeds) ^ mask) & mask) | seeds;
+        long run = mask;
+        for(int step = 0, shift = 1; step < fillSteps; step++, shift <<= 1) {
+            filled |= run & (filled >>> shift);
+            run &= run >>> shift;
+        }
+        return filled;
+    }
+
+    /**
+     * Counts the pairs of cells of this set that share a side. Pairs within a row are found by ANDing each word with itself shifted
+     * by one column (carrying the top bit into the next word of the row), and pairs across rows by ANDing a word with the word below it.
+     * @return Integer number of adjacent pairs of cells in this set
+     */
+    public int adjacentPairs() {
+        int pairs = 0;
+        for(int r = 0; r < rows; r++) {
+            int first = r * wordsPerRow;
+            for(int i = first; i < first + wordsPerRow; i++) {
+                long word = words[i];
+                long next = (word >>> 1) | (i + 1 < first + wordsPerRow ? words[i + 1] << 63 : 0);
+                pairs += Long.bitCount(word & next);
+                if(r < rows - 1) {
+                    pairs += Long.bitCount(word & words[i + wordsPerRow]);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Calculates the perimeter of the cells of this set. Every cell has four sides, and every pair of adjacent cells hides two of them.
+     * @return Integer perimeter of this set
+     */
+    public int perimeter() {
+        return 4 * size() - 2 * adjacentPairs();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        for(int r = 0; r < rows; r++) {
+            for(int c = 0; c < columns; c++) {
+                string.append(contains(position(r, c)) ? '#' : '.');
+            }
+            string.append('\n');
+        }
+        return string.toString();
+    }
+
+}
@@ -0,0 +1,164 @@
+package partition;
+
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ScoreAggregator.java
+ * ScoreAggregator is a ResultSink that keeps ScoreStatistics for each compactness metric instead of storing or printing the maps, so
+ * that the score distributions of millions of samples can be collected in constant memory.
+ * Every thread that hands results to the aggregator gets its own shard of statistics, which only that thread ever writes to, so
+ * adding a result takes no locks. The shards are merged when the statistics are read.
+ * Every shard also keeps a QuantileSketch of each metric, so the score distributions of separate runs can be written to files and
+ * merged later (see sketches() and ScoreSketches). The sketches of shard i are seeded from RandomStreams.seedFor(seed, i), so no two
+ * shards that are merged share a seed.
+ * NOTE: The aggregator is thread-safe, so a ParallelTrialRunner hands it results straight from its workers (see ResultSink.isThreadSafe()).
+ * The statistics must only be read once the trials are done.
+ */
+public final class ScoreAggregator implements ResultSink {
+
+    private final String[] metricNames;                         // name of each metric, in the order of TrialResult.scores()
+    private final Queue<Shard> shards = new ConcurrentLinkedQueue<>(); // the shard of every thread that has added results
+    private final ThreadLocal<Shard> shard;                     // the current thread's shard
+    private final long seed;                                    // seed that the sketches of every shard are derived from
+    private final AtomicInteger numOfSeeds = new AtomicInteger(); // number of shard and merged sketch seeds derived so far
+
+    /**
+     * Constructs an aggregator for the scores of the Partitioners (LW RE SB PP).
+     * @return void
+     */
+    public ScoreAggregator() {
+        this("LW", "RE", "SB", "PP");
+    }
+
+    /**
+     * Constructs an aggregator for results whose scores are the given metrics, in this order, with a seed chosen at random.
+     * @param metricNames String names of the metrics
+     * @return void
+     */
+    public ScoreAggregator(String... metricNames) {
+        this(new SplittableRandom().nextLong(), metricNames);
+    }
+
+    /**
+     * Constructs an aggregator for results whose scores are the given metrics, in this order.
+     * NOTE: Runs whose sketches will be merged (see ScoreSketches) need different seeds, such as RandomStreams.seedFor(seed, run).
+     * @param seed Long seed that the quantile sketches of every shard are derived from
+     * @param metricNames String names of the metrics
+     * @return void
+     */
+    public ScoreAggregator(long seed, String... metricNames) {
+        this.metricNames = metricNames.clone();
+        this.seed = seed;
+        this.shard = ThreadLocal.withInitial(() -> {
+            Shard newShard = new Shard(this.metricNames.length, nextSeed());
+            shards.add(newShard);
+            return newShard;
+        });
+    }
+
+    /**
+     * Adds the scores of a result to the current thread's shard. Results without scores (such as single districts) are ignored.
+     * @param result TrialResult of some trial
+     * @return void
+     */
+    @Override
+    public void accept(TrialResult result) {
+        double[] scores = result.scores();
+        if(scores == null) {
+            return;
+        }
+        Shard current = shard.get();
+        for (int m = 0; m < metricNames.length && m < scores.length; m++) {
+            current.statistics[m].add(scores[m]);
+            current.sketches[m].add(scores[m]);
+        }
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * @return String array of the metric names, in the order of TrialResult.scores()
+     */
+    public String[] metricNames() {
+        return metricNames.clone();
+    }
+
+    /**
+     * Merges the shards of every thread into new statistics for one metric.
+     * @param metric Integer position of the metric in metricNames()
+     * @return ScoreStatistics of every score of that metric added so far
+     */
+    public ScoreStatistics statistics(int metric) {
+        ScoreStatistics merged = new ScoreStatistics();
+        for (Shard merging : shards) {
+            merged.merge(merging.statistics[metric]);
+        }
+        return merged;
+    }
+
+    /**
+     * Merges the shards of every thread into new quantile sketches of every metric, which can be written to a file (see ScoreSketches).
+     * @return ScoreSketches of every score added so far
+     */
+    public ScoreSketches sketches() {
+        ScoreSketches merged = new ScoreSketches(nextSeed(), metricNames);
+        for (Shard merging : shards) {
+            for (int m = 0; m < metricNames.length; m++) {
+                merged.sketch(m).merge(merging.sketches[m]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Merges the shards of every thread into new statistics for one metric.
+     * @param metricName String name of the metric (see metricNames())
+     * @return ScoreStatistics of every score of that metric added so far
+     */
+    public ScoreStatistics statistics(String metricName) {
+        for (int m = 0; m < metricNames.length; m++) {
+            if(metricNames[m].equals(metricName)) {
+                return statistics(m);
+            }
+        }
+        throw new IllegalArgumentException("unknown metric " + metricName);
+    }
+
+    // derives a seed for the sketches of a new shard or of a merge that no other shard or merge of this aggregator has
+    private long nextSeed() {
+        return RandomStreams.seedFor(seed, numOfSeeds.getAndIncrement());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        for (int m = 0; m < metricNames.length; m++) {
+            string.append(metricNames[m]).append(' ').append(statistics(m)).append(System.lineSeparator());
+        }
+        return string.toString();
+    }
+
+    // the statistics and sketches of every metric that one thread has added scores to
+    private static final class Shard {
+
+        final ScoreStatistics[] statistics; // statistics[m] summarizes the scores of metric m
+        final QuantileSketch[] sketches;    // sketches[m] estimates the quantiles of metric m
+
+        Shard(int numOfMetrics, long seed) {
+            this.statistics = new ScoreStatistics[numOfMetrics];
+            this.sketches = new QuantileSketch[numOfMetrics];
+            for (int m = 0; m < numOfMetrics; m++) {
+                statistics[m] = new ScoreStatistics();
+                sketches[m] = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY, RandomStreams.seedFor(seed, m));
+            }
+        }
+
+    }
+
+}
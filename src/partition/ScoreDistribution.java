@@ -0,0 +1,142 @@
+package partition;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ScoreDistribution.java
+ * ScoreDistribution is the exact distribution of one compactness metric over a set of partitions: every distinct score the metric takes,
+ * in increasing order, with the number of partitions that have it. Unlike ScoreStatistics, nothing is rounded or binned, so it is meant
+ * for exhaustive runs (see PartitionEnumerator), where the number of distinct scores is small even when the number of partitions is not.
+ */
+public final class ScoreDistribution {
+
+    private final String metricName; // name of the metric (LW, RE, SB or PP)
+    private final double[] values;   // distinct scores of the metric, in increasing order
+    private final long[] counts;     // counts[i] is the number of partitions whose score is values[i]
+    private final long total;        // number of partitions
+
+    /**
+     * Constructs the distribution of a metric from the number of partitions that have each score.
+     * @param metricName String name of the metric
+     * @param scoreCounts Map from each score to the number of partitions that have it (scores with a count of 0 are left out)
+     * @return void
+     */
+    public ScoreDistribution(String metricName, Map<Double, Long> scoreCounts) {
+        TreeMap<Double, Long> sorted = new TreeMap<>();
+        for (Map.Entry<Double, Long> entry : scoreCounts.entrySet()) {
+            if(entry.getValue() != 0) {
+                sorted.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+        }
+        this.metricName = metricName;
+        this.values = new double[sorted.size()];
+        this.counts = new long[sorted.size()];
+        long sum = 0;
+        int i = 0;
+        for (Map.Entry<Double, Long> entry : sorted.entrySet()) {
+            values[i] = entry.getKey();
+            counts[i] = entry.getValue();
+            sum += counts[i];
+            i++;
+        }
+        this.total = sum;
+    }
+
+    /**
+     * @return String name of the metric
+     */
+    public String metricName() {
+        return metricName;
+    }
+
+    /**
+     * @return Long number of partitions in this distribution
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * @return Integer number of distinct scores
+     */
+    public int distinctScores() {
+        return values.length;
+    }
+
+    /**
+     * @param i Integer position of some distinct score, where 0 <= i < distinctScores()
+     * @return double i-th smallest distinct score
+     */
+    public double score(int i) {
+        return values[i];
+    }
+
+    /**
+     * @param i Integer position of some distinct score, where 0 <= i < distinctScores()
+     * @return Long number of partitions whose score is score(i)
+     */
+    public long count(int i) {
+        return counts[i];
+    }
+
+    /**
+     * @param i Integer position of some distinct score, where 0 <= i < distinctScores()
+     * @return double probability that a uniformly random partition has score score(i)
+     */
+    public double probability(int i) {
+        return (double) counts[i] / total;
+    }
+
+    /**
+     * @return double mean score of a uniformly random partition (NaN if there are no partitions)
+     */
+    public double mean() {
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i] * counts[i];
+        }
+        return sum / total;
+    }
+
+    /**
+     * @return double variance of the score of a uniformly random partition (NaN if there are no partitions)
+     */
+    public double variance() {
+        double mean = mean();
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += (values[i] - mean) * (values[i] - mean) * counts[i];
+        }
+        return sum / total;
+    }
+
+    /**
+     * Collapses this distribution onto rounded integer percentages, the way the Partitioners print scores, so that it can be compared
+     * bin by bin with ScoreStatistics.histogramCount() of a sampled run.
+     * @return long[] of ScoreStatistics.NUMBER_OF_BINS counts, where entry p is the number of partitions whose score rounds to p percent
+     */
+    public long[] histogram() {
+        long[] histogram = new long[ScoreStatistics.NUMBER_OF_BINS];
+        for (int i = 0; i < values.length; i++) {
+            int bin = (int) Math.max(0, Math.min(ScoreStatistics.NUMBER_OF_BINS - 1, Math.round(values[i] * 100)));
+            histogram[bin] += counts[i];
+        }
+        return histogram;
+    }
+
+    /**
+     * Formats the metric name, the number of partitions and the mean, followed by one line per distinct score with its count and probability.
+     * @return String of the formatted distribution
+     */
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        string.append(String.format("%s: %d partitions, %d distinct scores, mean=%.6f sd=%.6f%n", metricName, total, values.length, mean(), Math.sqrt(variance())));
+        for (int i = 0; i < values.length; i++) {
+            string.append(String.format("  %.6f %d (%.6f)%n", values[i], counts[i], probability(i)));
+        }
+        return string.toString();
+    }
+
+}
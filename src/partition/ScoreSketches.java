@@ -0,0 +1,162 @@
+package partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * ScoreSketches.java
+ * ScoreSketches holds a QuantileSketch of every compactness metric of a run, and is the file format in which runs share their score
+ * distributions. A run writes its sketches with ScoreAggregator.sketches().write(), and the main method merges the files of many runs
+ * (of separate processes or machines) into one file and prints the quantiles of every metric:
+ *     java partition.ScoreSketches merged.sketch run1.sketch run2.sketch ...
+ * Layout: the int MAGIC, the int number of metrics, then for each metric its name (modified UTF-8) and its sketch (see QuantileSketch.write()).
+ */
+public final class ScoreSketches {
+
+    public static final int MAGIC = 0x534B5431; // "SKT1", marks the start of a sketch file
+
+    private final String[] metricNames;     // name of each metric
+    private final QuantileSketch[] sketches; // sketches[m] summarizes the scores of metric m
+
+    /**
+     * Constructs empty sketches for some metrics, with a seed chosen at random.
+     * @param metricNames String names of the metrics
+     * @return void
+     */
+    public ScoreSketches(String... metricNames) {
+        this(new SplittableRandom().nextLong(), metricNames);
+    }
+
+    /**
+     * Constructs empty sketches for some metrics that can be reproduced.
+     * NOTE: The sketch of metric m is seeded with RandomStreams.seedFor(seed, m), so sketches that will be merged need different seeds.
+     * @param seed Long seed of the sketches
+     * @param metricNames String names of the metrics
+     * @return void
+     */
+    public ScoreSketches(long seed, String... metricNames) {
+        this.metricNames = metricNames.clone();
+        this.sketches = new QuantileSketch[metricNames.length];
+        for (int m = 0; m < metricNames.length; m++) {
+            sketches[m] = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY, RandomStreams.seedFor(seed, m));
+        }
+    }
+
+    /**
+     * @return String array of the metric names
+     */
+    public String[] metricNames() {
+        return metricNames.clone();
+    }
+
+    /**
+     * @param metric Integer position of the metric in metricNames()
+     * @return QuantileSketch of that metric (not a copy)
+     */
+    public QuantileSketch sketch(int metric) {
+        return sketches[metric];
+    }
+
+    /**
+     * Merges the sketches of another run into these sketches, metric by metric.
+     * NOTE: Both must have the same metrics in the same order.
+     * @param other ScoreSketches that we will merge into these sketches (they are not changed)
+     * @return void
+     */
+    public void merge(ScoreSketches other) {
+        if(Arrays.equals(metricNames, other.metricNames) == false) {
+            throw new IllegalArgumentException("cannot merge sketches of " + Arrays.toString(other.metricNames) + " into " + Arrays.toString(metricNames));
+        }
+        for (int m = 0; m < sketches.length; m++) {
+            sketches[m].merge(other.sketches[m]);
+        }
+    }
+
+    /**
+     * Writes these sketches to a stream (see read()). The stream is flushed but not closed.
+     * @param out OutputStream we will write to
+     * @return void
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(metricNames.length);
+        for (int m = 0; m < metricNames.length; m++) {
+            data.writeUTF(metricNames[m]);
+            sketches[m].write(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads sketches written by write().
+     * @param in InputStream we will read from
+     * @return ScoreSketches that were written
+     * @throws IOException if the stream cannot be read or does not hold sketches
+     */
+    public static ScoreSketches read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if(data.readInt() != MAGIC) {
+            throw new IOException("not a sketch file");
+        }
+        int numOfMetrics = data.readInt();
+        String[] metricNames = new String[numOfMetrics];
+        QuantileSketch[] sketches = new QuantileSketch[numOfMetrics];
+        for (int m = 0; m < numOfMetrics; m++) {
+            metricNames[m] = data.readUTF();
+            sketches[m] = QuantileSketch.read(data);
+        }
+        ScoreSketches scoreSketches = new ScoreSketches(metricNames);
+        System.arraycopy(sketches, 0, scoreSketches.sketches, 0, numOfMetrics);
+        return scoreSketches;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        for (int m = 0; m < metricNames.length; m++) {
+            string.append(metricNames[m]).append(' ').append(sketches[m]).append(System.lineSeparator());
+        }
+        return string.toString();
+    }
+
+    /**
+     * Merges sketch files into one file and prints the quantiles of the merged sketches.
+     * @param args String array whose first entry is the file we will write, followed by the files we will merge
+     * @return void
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("usage: java partition.ScoreSketches <merged file> <sketch file>...");
+            System.exit(2);
+        }
+        ScoreSketches merged = null;
+        for (int i = 1; i < args.length; i++) {
+            ScoreSketches shard;
+            try (InputStream in = new FileInputStream(args[i])) {
+                shard = read(in);
+            }
+            if(merged == null) {
+                merged = shard;
+            } else {
+                merged.merge(shard);
+            }
+        }
+        try (OutputStream out = new FileOutputStream(args[0])) {
+            merged.write(out);
+        }
+        System.out.print(merged);
+    }
+
+}
@@ -0,0 +1,143 @@
+package partition;
+
+/**
+ * ScoreStatistics.java
+ * ScoreStatistics summarizes a stream of compactness scores of one metric without storing them: the count, the mean and variance
+ * (with Welford's online algorithm, which stays accurate over millions of scores), the minimum and maximum, and a histogram of the
+ * scores rounded to integer percentages, exactly as the Partitioners print them.
+ * NOTE: A ScoreStatistics is not thread-safe. Threads should each keep their own and merge them at the end (see ScoreAggregator).
+ */
+public final class ScoreStatistics {
+
+    public static final int NUMBER_OF_BINS = 101; // one bin for each rounded percentage from 0 to 100
+
+    private long count;                // number of scores added
+    private double mean;               // mean of the scores added
+    private double sumOfSquaredDeviations; // sum of the squared differences between each score and the mean (M2 in Welford's algorithm)
+    private double min;                // smallest score added
+    private double max;                // largest score added
+    private final long[] histogram;    // histogram[p] is the number of scores that round to p percent (clamped to 0..100)
+
+    /**
+     * Constructs empty statistics.
+     * @return void
+     */
+    public ScoreStatistics() {
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        this.histogram = new long[NUMBER_OF_BINS];
+    }
+
+    /**
+     * Adds a score to these statistics.
+     * @param score Double unrounded compactness score
+     * @return void
+     */
+    public void add(double score) {
+        count++;
+        double delta = score - mean;
+        mean += delta / count;
+        sumOfSquaredDeviations += delta * (score - mean);
+        min = Math.min(min, score);
+        max = Math.max(max, score);
+        histogram[bin(score)]++;
+    }
+
+    /**
+     * Adds every score summarized by other statistics to these statistics, as if they had been added one by one.
+     * The means and variances are combined with the parallel form of Welford's algorithm (Chan et al.).
+     * @param other ScoreStatistics that we will merge into these statistics (it is not changed)
+     * @return void
+     */
+    public void merge(ScoreStatistics other) {
+        if(other.count == 0) {
+            return;
+        }
+        long totalCount = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / totalCount;
+        sumOfSquaredDeviations += other.sumOfSquaredDeviations + delta * delta * ((double) count * other.count / totalCount);
+        count = totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int p = 0; p < NUMBER_OF_BINS; p++) {
+            histogram[p] += other.histogram[p];
+        }
+    }
+
+    // determines the histogram bin of a score: its rounded percentage, clamped to 0..100
+    private static int bin(double score) {
+        long percentage = Math.round(score * 100);
+        return (int) Math.max(0, Math.min(NUMBER_OF_BINS - 1, percentage));
+    }
+
+    /**
+     * @return Long number of scores added
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return Double mean of the scores added (0 if there are none)
+     */
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * @return Double sample variance of the scores added (0 if there are fewer than two)
+     */
+    public double variance() {
+        return count < 2 ? 0 : sumOfSquaredDeviations / (count - 1);
+    }
+
+    /**
+     * @return Double sample standard deviation of the scores added (0 if there are fewer than two)
+     */
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    /**
+     * @return Double smallest score added (positive infinity if there are none)
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return Double largest score added (negative infinity if there are none)
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * @param percentage Integer rounded percentage, where 0 <= percentage <= 100
+     * @return Long number of scores added that round to that percentage
+     */
+    public long histogramCount(int percentage) {
+        return histogram[percentage];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        string.append("count=").append(count)
+              .append(" mean=").append(mean)
+              .append(" sd=").append(standardDeviation())
+              .append(" min=").append(min)
+              .append(" max=").append(max)
+              .append(" histogram=");
+        boolean first = true;
+        for (int p = 0; p < NUMBER_OF_BINS; p++) {
+            if(histogram[p] != 0) { // only the bins that were hit, as percentage:count
+                string.append(first ? "" : ",").append(p).append(':').append(histogram[p]);
+                first = false;
+            }
+        }
+        return string.toString();
+    }
+
+}
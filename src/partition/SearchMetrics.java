@@ -0,0 +1,159 @@
+package partition;
+
+import java.util.Arrays;
+
+/**
+ * SearchMetrics.java
+ * SearchMetrics counts what a DistrictingEngine's backtracking search does, so that it can be seen why a configuration is slow:
+ * how many cells are claimed and returned again, how deep the search goes, how often the pruning and validMap() checks reject a
+ * claim, how often districts fail, how often maps are backtracked into, rejected or cut off by a RestartSchedule, how many restarts
+ * every accepted trial needed, and how long it took (in a LatencyHistogram, since backtracking has a heavy tail).
+ * Every accepted trial is also committed as a TrialEvent, which JDK Flight Recorder records while a recording is running.
+ * NOTE: SearchMetrics belongs to one engine and is only updated by the thread that uses it, so the counters are plain fields.
+ * Other threads should only take a snapshot() once the trials are done (ParallelTrialRunner.run() returns the merged snapshot).
+ */
+public final class SearchMetrics {
+
+    private long cellsClaimed;      // number of cells claimed by claimer()
+    private long cellsReturned;     // number of cells returned by returner()
+    private int maxDepth;           // deepest depth the district search reached (depth 0 is the first cell of a district)
+    private long validityChecks;    // number of claims checked with SquaretopiaMatrix.claimKeepsMapValid()
+    private long validityFailures;  // number of those claims that were pruned
+    private long validMapCalls;     // number of completed districts checked with SquaretopiaMatrix.validMap()
+    private long validMapFailures;  // number of those districts that left an invalid map behind
+    private long districtFailures;  // number of districts that could not be grown
+    private long backtracks;        // number of times a map was backtracked into instead of rejected (see BacktrackPolicy)
+    private long mapRejections;     // number of whole maps (or single districts) thrown away by a sampler
+    private long attemptsCutOff;    // number of attempts that ran out of claims (see RestartSchedule)
+    private long trialsAccepted;    // number of valid samples returned by a sampler
+    private final LatencyHistogram trialLatencies = new LatencyHistogram(); // wall time of every accepted trial
+    private final long[] restartCounts = new long[SearchMetricsSnapshot.RESTART_BINS]; // restartCounts[r] is the number of accepted trials that needed r restarts (the last bin also counts every trial that needed more)
+
+    private long trialStartNanos;       // System.nanoTime() when the current trial started
+    private long cellsClaimedAtStart;   // cellsClaimed when the current trial started
+    private long cellsReturnedAtStart;  // cellsReturned when the current trial started
+    private long failuresAtStart;       // districtFailures when the current trial started
+    private long rejectionsAtStart;     // mapRejections when the current trial started
+
+    // records a cell claimed by the engine
+    void cellClaimed() {
+        cellsClaimed++;
+    }
+
+    // records a claimed cell the engine returned again
+    void cellReturned() {
+        cellsReturned++;
+    }
+
+    // records a depth the district search opened
+    void depthReached(int depth) {
+        if(depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    // records a claim checked by the pruning, and whether it passed
+    void validityChecked(boolean passed) {
+        validityChecks++;
+        if(passed == false) {
+            validityFailures++;
+        }
+    }
+
+    // records a completed district checked with validMap(), and whether the map stayed valid
+    void validMapChecked(boolean passed) {
+        validMapCalls++;
+        if(passed == false) {
+            validMapFailures++;
+        }
+    }
+
+    // records a district that could not be grown
+    void districtFailed() {
+        districtFailures++;
+    }
+
+    // records an attempt that ran out of claims
+    void attemptCutOff() {
+        attemptsCutOff++;
+    }
+
+    // records a map that was backtracked into instead of rejected
+    void backtracked() {
+        backtracks++;
+    }
+
+    /**
+     * Records that a sampler threw away a map (or single district) and will start it again.
+     * @return void
+     */
+    public void mapRejected() {
+        mapRejections++;
+    }
+
+    /**
+     * Records that a sampler started a trial.
+     * @return void
+     */
+    public void trialStarted() {
+        trialStartNanos = System.nanoTime();
+        cellsClaimedAtStart = cellsClaimed;
+        cellsReturnedAtStart = cellsReturned;
+        failuresAtStart = districtFailures;
+        rejectionsAtStart = mapRejections;
+    }
+
+    /**
+     * Records that a sampler accepted the trial it started last, along with the trial's wall time, and commits a TrialEvent for it.
+     * @param trialIndex Integer index of the trial
+     * @return void
+     */
+    public void trialAccepted(int trialIndex) {
+        long trialTime = System.nanoTime() - trialStartNanos;
+        long restarts = mapRejections - rejectionsAtStart;
+        trialsAccepted++;
+        trialLatencies.record(trialTime);
+        restartCounts[(int) Math.min(restarts, restartCounts.length - 1)]++;
+        TrialEvent event = new TrialEvent();
+        if(event.shouldCommit()) {
+            event.trialIndex = trialIndex;
+            event.trialTime = trialTime;
+            event.cellsClaimed = cellsClaimed - cellsClaimedAtStart;
+            event.cellsReturned = cellsReturned - cellsReturnedAtStart;
+            event.districtFailures = districtFailures - failuresAtStart;
+            event.mapRejections = restarts;
+            event.commit();
+        }
+    }
+
+    /**
+     * Sets every counter back to zero.
+     * @return void
+     */
+    public void reset() {
+        cellsClaimed = 0;
+        cellsReturned = 0;
+        maxDepth = 0;
+        validityChecks = 0;
+        validityFailures = 0;
+        validMapCalls = 0;
+        validMapFailures = 0;
+        districtFailures = 0;
+        backtracks = 0;
+        mapRejections = 0;
+        attemptsCutOff = 0;
+        trialsAccepted = 0;
+        trialLatencies.clear();
+        Arrays.fill(restartCounts, 0);
+    }
+
+    /**
+     * @return SearchMetricsSnapshot of the counters as they are now
+     */
+    public SearchMetricsSnapshot snapshot() {
+        return new SearchMetricsSnapshot(cellsClaimed, cellsReturned, maxDepth, validityChecks, validityFailures, validMapCalls,
+                                         validMapFailures, districtFailures, backtracks, mapRejections, attemptsCutOff, trialsAccepted,
+                                         new LatencyHistogram(trialLatencies), restartCounts.clone());
+    }
+
+}
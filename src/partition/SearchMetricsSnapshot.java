@@ -0,0 +1,195 @@
+package partition;
+
+/**
+ * SearchMetricsSnapshot.java
+ * SearchMetricsSnapshot is an immutable copy of the counters of a SearchMetrics. Snapshots of several engines (such as the workers
+ * of a ParallelTrialRunner) can be merged into one snapshot of the whole run.
+ */
+public final class SearchMetricsSnapshot {
+
+    static final int RESTART_BINS = 65; // restarts per trial are counted exactly up to 63, and 64 or more share the last bin
+
+    public static final SearchMetricsSnapshot EMPTY = new SearchMetricsSnapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, new LatencyHistogram(),
+                                                                                new long[RESTART_BINS]);
+
+    private final long cellsClaimed;      // number of cells claimed
+    private final long cellsReturned;     // number of cells returned again
+    private final int maxDepth;           // deepest depth the district search reached
+    private final long validityChecks;    // number of claims checked by the pruning
+    private final long validityFailures;  // number of claims pruned
+    private final long validMapCalls;     // number of completed districts checked with validMap()
+    private final long validMapFailures;  // number of completed districts that left an invalid map behind
+    private final long districtFailures;  // number of districts that could not be grown
+    private final long backtracks;        // number of times a map was backtracked into
+    private final long mapRejections;     // number of maps thrown away
+    private final long attemptsCutOff;    // number of attempts that ran out of claims
+    private final long trialsAccepted;    // number of valid samples
+    private final LatencyHistogram trialLatencies; // wall time of every accepted trial (never handed out, so never changed)
+    private final long[] restartCounts;            // restartCounts[r] is the number of accepted trials that needed r restarts
+
+    SearchMetricsSnapshot(long cellsClaimed, long cellsReturned, int maxDepth, long validityChecks, long validityFailures, long validMapCalls,
+                          long validMapFailures, long districtFailures, long backtracks, long mapRejections, long attemptsCutOff,
+                          long trialsAccepted, LatencyHistogram trialLatencies, long[] restartCounts) {
+        this.cellsClaimed = cellsClaimed;
+        this.cellsReturned = cellsReturned;
+        this.maxDepth = maxDepth;
+        this.validityChecks = validityChecks;
+        this.validityFailures = validityFailures;
+        this.validMapCalls = validMapCalls;
+        this.validMapFailures = validMapFailures;
+        this.districtFailures = districtFailures;
+        this.backtracks = backtracks;
+        this.mapRejections = mapRejections;
+        this.attemptsCutOff = attemptsCutOff;
+        this.trialsAccepted = trialsAccepted;
+        this.trialLatencies = trialLatencies;
+        this.restartCounts = restartCounts;
+    }
+
+    /**
+     * Adds the counters of two snapshots.
+     * @param other SearchMetricsSnapshot of another engine
+     * @return SearchMetricsSnapshot of both engines together
+     */
+    public SearchMetricsSnapshot merge(SearchMetricsSnapshot other) {
+        LatencyHistogram latencies = new LatencyHistogram(trialLatencies);
+        latencies.merge(other.trialLatencies);
+        long[] restarts = restartCounts.clone();
+        for (int r = 0; r < RESTART_BINS; r++) {
+            restarts[r] += other.restartCounts[r];
+        }
+        return new SearchMetricsSnapshot(cellsClaimed + other.cellsClaimed, cellsReturned + other.cellsReturned, Math.max(maxDepth, other.maxDepth),
+                                         validityChecks + other.validityChecks, validityFailures + other.validityFailures,
+                                         validMapCalls + other.validMapCalls, validMapFailures + other.validMapFailures,
+                                         districtFailures + other.districtFailures, backtracks + other.backtracks,
+                                         mapRejections + other.mapRejections, attemptsCutOff + other.attemptsCutOff,
+                                         trialsAccepted + other.trialsAccepted, latencies, restarts);
+    }
+
+    /**
+     * @return Long number of cells claimed
+     */
+    public long cellsClaimed() {
+        return cellsClaimed;
+    }
+
+    /**
+     * @return Long number of cells returned again (every returned cell is a claim that was undone)
+     */
+    public long cellsReturned() {
+        return cellsReturned;
+    }
+
+    /**
+     * @return Integer deepest depth the district search reached (depth 0 is the first cell of a district)
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return Long number of claims checked by the pruning (see SquaretopiaMatrix.claimKeepsMapValid())
+     */
+    public long validityChecks() {
+        return validityChecks;
+    }
+
+    /**
+     * @return Long number of claims the pruning rejected
+     */
+    public long validityFailures() {
+        return validityFailures;
+    }
+
+    /**
+     * @return Long number of completed districts checked with SquaretopiaMatrix.validMap()
+     */
+    public long validMapCalls() {
+        return validMapCalls;
+    }
+
+    /**
+     * @return Long number of completed districts that left an invalid map behind
+     */
+    public long validMapFailures() {
+        return validMapFailures;
+    }
+
+    /**
+     * @return Long number of districts that could not be grown
+     */
+    public long districtFailures() {
+        return districtFailures;
+    }
+
+    /**
+     * @return Long number of times a map was backtracked into instead of being rejected
+     */
+    public long backtracks() {
+        return backtracks;
+    }
+
+    /**
+     * @return Long number of whole maps (or single districts) thrown away and started again
+     */
+    public long mapRejections() {
+        return mapRejections;
+    }
+
+    /**
+     * @return Long number of attempts that ran out of claims and were restarted (see RestartSchedule)
+     */
+    public long attemptsCutOff() {
+        return attemptsCutOff;
+    }
+
+    /**
+     * @param restarts Integer number of restarts, where 0 <= restarts
+     * @return Long number of accepted trials that needed exactly that many restarts (the count for 64 includes every trial that needed more)
+     */
+    public long trialsWithRestarts(int restarts) {
+        return restartCounts[Math.min(restarts, RESTART_BINS - 1)];
+    }
+
+    /**
+     * @return Long number of valid samples
+     */
+    public long trialsAccepted() {
+        return trialsAccepted;
+    }
+
+    /**
+     * @return LatencyHistogram copy of the wall times of the accepted trials
+     */
+    public LatencyHistogram trialLatencies() {
+        return new LatencyHistogram(trialLatencies);
+    }
+
+    @Override
+    public String toString() {
+        String lineSeparator = System.lineSeparator();
+        return "trials accepted:    " + trialsAccepted + lineSeparator
+             + "maps rejected:      " + mapRejections + " (" + attemptsCutOff + " cut off)" + lineSeparator
+             + "restarts per trial: " + restartSummary() + lineSeparator
+             + "backtracks:         " + backtracks + lineSeparator
+             + "district failures:  " + districtFailures + lineSeparator
+             + "cells claimed:      " + cellsClaimed + lineSeparator
+             + "cells returned:     " + cellsReturned + lineSeparator
+             + "max depth:          " + maxDepth + lineSeparator
+             + "claims pruned:      " + validityFailures + " of " + validityChecks + lineSeparator
+             + "invalid maps:       " + validMapFailures + " of " + validMapCalls + lineSeparator
+             + "trial time:         " + trialLatencies + lineSeparator;
+    }
+
+    // lists the restart counts that occurred, as restarts:trials
+    private String restartSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (int r = 0; r < RESTART_BINS; r++) {
+            if(restartCounts[r] != 0) {
+                summary.append(summary.length() == 0 ? "" : " ").append(r).append(r == RESTART_BINS - 1 ? "+:" : ":").append(restartCounts[r]);
+            }
+        }
+        return summary.toString();
+    }
+
+}
@@ -12,8 +12,6 @@ public class SquaretopiaCell {
     public boolean checked; // used when checking for the validity of a district assignment
     public int direction; // relative to parent, this cell is in this direction
                           // where -1 is not yet defined, 1 is above, 2 is right, 3 is below, 4 is left
-    public double lowerBoundForProbability; // used in weighted partitioning
-    public double upperBoundForProbability; // used in weighted partitioning
     
     /**
      * Constructs a new SquaretopiaCell, which tracks the given row and column that it
@@ -1,17 +1,42 @@
 package partition;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * Joshua Mariz 05/05/2021
- * Squaretopia representation using an array of SquaretopiaCell arrays
+ * Squaretopia representation using an array of SquaretopiaCell arrays, or (in flat mode) primitive arrays indexed by a single cell index
  */
 final public class SquaretopiaMatrix {
     
     private final int M;             // number of rows
     private final int N;             // number of columns
-    public final SquaretopiaCell[][] data;   // M-by-N SquaretopiaCell array
+    public final SquaretopiaCell[][] data;   // M-by-N SquaretopiaCell array (null when this matrix is flat)
+    private final int[] districtNumbers;     // flat mode: district number of each cell, where the cell at (row, col) has index row * N + col
+    private final boolean[] checkedCells;    // flat mode: checked value of each cell, indexed like districtNumbers
+    private final int[] cellDirections;      // flat mode: direction of each cell relative to its parent (see SquaretopiaCell.direction), indexed like districtNumbers
+    private final int[] neighborTable;       // the neighbor of cell k in direction d (1 is above, 2 is right, 3 is below, 4 is left) is at index 4 * k + d - 1 (-1 if it is off the grid)
+    private final int[] freeNeighborCounts;  // number of free neighbors of each cell, kept up to date by setDistrictNumber()
+    private final IndexedCellSet[] cellsByFreeNeighborCount; // entry c holds the free cells that have exactly c free neighbors
+    private final int[] floodFillStack;      // scratch stack of cells still to be visited by floodFill()
+    private final int[] visitStamps;         // a cell has been visited by the current flood fill when its stamp equals visitStamp
+    private int visitStamp;                  // stamp of the current flood fill; bumping it unmarks every cell at once
+    private final int[] ringOffsets;         // index offsets of the eight cells around a cell, clockwise from the cell above it
+    private final int trackedDistricts;      // districts 1 to trackedDistricts have their shape kept up to date by setDistrictNumber()
+    private final int[] districtSizes;       // districtSizes[d] is the number of cells in district d
+    private final int[] districtPerimeters;  // districtPerimeters[d] is the perimeter of district d
+    private final int[] districtRowCounts;   // districtRowCounts[d * M + i] is the number of cells of district d in row i
+    private final int[] districtColCounts;   // districtColCounts[d * N + j] is the number of cells of district d in column j
+    private final int[] districtMinRows;     // districtMinRows[d] is the smallest row of district d (M if the district is empty)
+    private final int[] districtMaxRows;     // districtMaxRows[d] is the largest row of district d (-1 if the district is empty)
+    private final int[] districtMinCols;     // districtMinCols[d] is the smallest column of district d (N if the district is empty)
+    private final int[] districtMaxCols;     // districtMaxCols[d] is the largest column of district d (-1 if the district is empty)
+    private final int[] boardPositions;      // flat mode: boardPositions[k] is the position of inner cell k in the row bitboards below (-1 for padding cells)
+    private final RowBitboard freeCells;     // flat mode: inner cells that are not checked, kept up to date by setChecked()
+    private final RowBitboard[] districtCells; // flat mode: districtCells[d] holds the cells of district d, for 1 <= d <= trackedDistricts
+    private final RowBitboard unvisitedCells; // flat mode: scratch bitboard of the free cells that validMap() has not reached yet
+    private final RowBitboard componentCells; // flat mode: scratch bitboard of the group of free cells that validMap() is filling
     
     /**
      * Sets up an M by N representation of Squaretopia using an array of SquaretopiaCell arrays.
@@ -21,18 +46,497 @@ final public class SquaretopiaMatrix {
      * @return void
      */
     public SquaretopiaMatrix(int M, int N) {
+        this(M, N, false);
+    }
+    
+    /**
+     * Sets up an M by N representation of Squaretopia. A flat Squaretopia stores its district numbers and checked values in primitive arrays
+     * indexed by a single cell index (see index()) instead of in SquaretopiaCell objects, which keeps the whole map in a few contiguous arrays.
+     * NOTE: This method initializes the outer padding layer of the Squaretopia matrix to -1. This is so that each inner cell has four adjacent neighbors.
+     * @param M Integer number of rows in this Squaretopia
+     * @param N Integer number of columns in this Squaretopia
+     * @param flat Boolean value for the statement: This Squaretopia is backed by primitive arrays instead of SquaretopiaCell objects.
+     * @return void
+     */
+    public SquaretopiaMatrix(int M, int N, boolean flat) {
         this.M = M;
         this.N = N;
-        data = new SquaretopiaCell[M][N];
+        if(flat) {
+            data = null;
+            districtNumbers = new int[M * N];
+            checkedCells = new boolean[M * N];
+            cellDirections = new int[M * N];
+        } else {
+            data = new SquaretopiaCell[M][N];
+            districtNumbers = null;
+            checkedCells = null;
+            cellDirections = null;
+        }
+        neighborTable = new int[4 * M * N];
+        floodFillStack = new int[M * N];
+        ringOffsets = new int[] {-N, -N + 1, 1, N + 1, N, N - 1, -1, -N - 1};
+        visitStamps = new int[M * N];
+        visitStamp = 0;
+        freeNeighborCounts = new int[M * N];
+        cellsByFreeNeighborCount = new IndexedCellSet[5];
+        trackedDistricts = Math.max(M - 2, 1); // an n by n Squaretopia never has more than n districts
+        districtSizes = new int[trackedDistricts + 1];
+        districtPerimeters = new int[trackedDistricts + 1];
+        districtRowCounts = new int[(trackedDistricts + 1) * M];
+        districtColCounts = new int[(trackedDistricts + 1) * N];
+        districtMinRows = new int[trackedDistricts + 1];
+        districtMaxRows = new int[trackedDistricts + 1];
+        districtMinCols = new int[trackedDistricts + 1];
+        districtMaxCols = new int[trackedDistricts + 1];
+        for (int c = 0; c <= 4; c++) {
+            cellsByFreeNeighborCount[c] = new IndexedCellSet(M * N);
+        }
+        if(flat) {
+            // the row bitboards are only read by the flat branches, so a matrix of SquaretopiaCells goes without them
+            freeCells = new RowBitboard(Math.max(M - 2, 0), Math.max(N - 2, 0));
+            unvisitedCells = new RowBitboard(freeCells);
+            componentCells = new RowBitboard(freeCells);
+            districtCells = new RowBitboard[trackedDistricts + 1];
+            for (int d = 1; d <= trackedDistricts; d++) {
+                districtCells[d] = new RowBitboard(freeCells);
+            }
+            boardPositions = new int[M * N];
+        } else {
+            freeCells = null;
+            unvisitedCells = null;
+            componentCells = null;
+            districtCells = null;
+            boardPositions = null;
+        }
         for (int i = 0; i < M; i++) {
             for (int j = 0; j < N; j++) {
-                data[i][j] = new SquaretopiaCell(i, j);
-                if(i == 0 || i == M - 1 || j == 0 || j == N - 1) {
-                    data[i][j].districtNumber = -1;
-                    data[i][j].checked = true;
+                int k = index(i, j);
+                neighborTable[4 * k] = i > 0 ? k - N : -1;
+                neighborTable[4 * k + 1] = j < N - 1 ? k + 1 : -1;
+                neighborTable[4 * k + 2] = i < M - 1 ? k + N : -1;
+                neighborTable[4 * k + 3] = j > 0 ? k - 1 : -1;
+                boolean padding = i == 0 || i == M - 1 || j == 0 || j == N - 1;
+                if(flat) {
+                    boardPositions[k] = padding ? -1 : freeCells.position(i - 1, j - 1);
+                } else {
+                    data[i][j] = new SquaretopiaCell(i, j);
                 }
             }
         }
+        reset();
+    }
+    
+    /**
+     * Returns every inner cell of this Squaretopia to the free state it had right after construction, so that the same matrix can be
+     * districted again without allocating a new one. The outer padding layer is set to -1 and marked as checked.
+     * NOTE: The free neighbor counts are rebuilt from scratch in index order, so a reset matrix behaves exactly like a new one.
+     * @return void
+     */
+    public void reset() {
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                int k = index(i, j);
+                boolean padding = i == 0 || i == M - 1 || j == 0 || j == N - 1;
+                // the district numbers are written directly, because the free neighbor counts are rebuilt below
+                if(data == null) {
+                    districtNumbers[k] = padding ? -1 : 0;
+                } else {
+                    data[i][j].districtNumber = padding ? -1 : 0;
+                }
+                setChecked(k, padding);
+                setDirection(k, -1);
+            }
+        }
+        for (int c = 0; c <= 4; c++) {
+            cellsByFreeNeighborCount[c].clear();
+        }
+        Arrays.fill(districtSizes, 0);
+        Arrays.fill(districtPerimeters, 0);
+        Arrays.fill(districtRowCounts, 0);
+        Arrays.fill(districtColCounts, 0);
+        Arrays.fill(districtMinRows, M);
+        Arrays.fill(districtMaxRows, -1);
+        Arrays.fill(districtMinCols, N);
+        Arrays.fill(districtMaxCols, -1);
+        if(data == null) {
+            for (int d = 1; d <= trackedDistricts; d++) {
+                districtCells[d].clear();
+            }
+        }
+        for (int k = 0; k < M * N; k++) {
+            int count = 0;
+            for (int d = 0; d < 4; d++) {
+                int neighbor = neighborTable[4 * k + d];
+                if(neighbor != -1 && getDistrictNumber(neighbor) == 0) {
+                    count++;
+                }
+            }
+            freeNeighborCounts[k] = count;
+            if(getDistrictNumber(k) == 0) {
+                cellsByFreeNeighborCount[count].add(k);
+            }
+        }
+    }
+    
+    /**
+     * Copies the free (unchecked) inner cells of this Squaretopia into a row bitboard, where the inner cell (i, j) is at row i - 1 and column j - 1.
+     * NOTE: Only a flat Squaretopia keeps this bitboard. It is kept up to date by setChecked(), so it only matches a Squaretopia whose checked values are always set through setChecked().
+     * @param target RowBitboard of an (M - 2) by (N - 2) grid that will receive the free cells
+     * @return void
+     */
+    public void copyFreeCells(RowBitboard target) {
+        target.copyFrom(freeCells);
+    }
+    
+    /**
+     * Copies the cells of a district into a row bitboard, where the inner cell (i, j) is at row i - 1 and column j - 1.
+     * NOTE: Only a flat Squaretopia keeps this bitboard. It is kept up to date by setDistrictNumber(), so it only matches a Squaretopia whose district numbers are always set through setDistrictNumber().
+     * @param districtNumber Integer number of some district, where 1 <= districtNumber <= M - 2
+     * @param target RowBitboard of an (M - 2) by (N - 2) grid that will receive the district's cells
+     * @return void
+     */
+    public void copyDistrictCells(int districtNumber, RowBitboard target) {
+        target.copyFrom(districtCells[districtNumber]);
+    }
+    
+    /**
+     * @return Boolean value for the statement: This Squaretopia is backed by primitive arrays instead of SquaretopiaCell objects.
+     */
+    public boolean isFlat() {
+        return data == null;
+    }
+    
+    /**
+     * @return Integer number of rows in this Squaretopia (including the outer padding layer)
+     */
+    public int numberOfRows() {
+        return M;
+    }
+    
+    /**
+     * @return Integer number of columns in this Squaretopia (including the outer padding layer)
+     */
+    public int numberOfColumns() {
+        return N;
+    }
+    
+    /**
+     * Determines the single cell index of the cell at a given row and column. The cells above, below, to the left and to the right
+     * of the cell with index k have indices k - N, k + N, k - 1 and k + 1.
+     * @param row Integer row number of the cell
+     * @param col Integer column number of the cell
+     * @return Integer index of the cell
+     */
+    public int index(int row, int col) {
+        return row * N + col;
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @return Integer row number of the cell
+     */
+    public int row(int index) {
+        return index / N;
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @return Integer column number of the cell
+     */
+    public int col(int index) {
+        return index % N;
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @return Integer district number of the cell (0 if the cell is free, -1 if it is a padding cell)
+     */
+    public int getDistrictNumber(int index) {
+        return data == null ? districtNumbers[index] : data[index / N][index % N].districtNumber;
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @param districtNumber Integer district number that the cell will be assigned to
+     * @return void
+     */
+    public void setDistrictNumber(int index, int districtNumber) {
+        int oldDistrictNumber = getDistrictNumber(index);
+        if(oldDistrictNumber == districtNumber) {
+            return;
+        }
+        if(oldDistrictNumber >= 1 && oldDistrictNumber <= trackedDistricts) {
+            removeFromDistrictShape(index, oldDistrictNumber);
+        }
+        if(data == null) {
+            districtNumbers[index] = districtNumber;
+        } else {
+            data[index / N][index % N].districtNumber = districtNumber;
+        }
+        if((oldDistrictNumber == 0) != (districtNumber == 0)) {
+            updateFreeNeighborCounts(index, districtNumber == 0);
+        }
+        if(districtNumber >= 1 && districtNumber <= trackedDistricts) {
+            addToDistrictShape(index, districtNumber);
+        }
+    }
+    
+    /**
+     * Updates the size, perimeter and bounding box of a district after a cell has joined it. The cell adds 4 to the perimeter, minus 2
+     * for each neighbor that is already in the district, and can only widen the bounding box, so this is O(1).
+     * @param index Integer index of the cell that joined the district
+     * @param districtNumber Integer district number of the district
+     * @return void
+     */
+    private void addToDistrictShape(int index, int districtNumber) {
+        int row = index / N;
+        int col = index % N;
+        districtSizes[districtNumber]++;
+        if(data == null && boardPositions[index] != -1) {
+            districtCells[districtNumber].add(boardPositions[index]);
+        }
+        districtPerimeters[districtNumber] += 4 - 2 * neighborsInDistrict(index, districtNumber);
+        districtRowCounts[districtNumber * M + row]++;
+        districtColCounts[districtNumber * N + col]++;
+        districtMinRows[districtNumber] = Math.min(districtMinRows[districtNumber], row);
+        districtMaxRows[districtNumber] = Math.max(districtMaxRows[districtNumber], row);
+        districtMinCols[districtNumber] = Math.min(districtMinCols[districtNumber], col);
+        districtMaxCols[districtNumber] = Math.max(districtMaxCols[districtNumber], col);
+    }
+    
+    /**
+     * Updates the size, perimeter and bounding box of a district after a cell has left it, which undoes addToDistrictShape().
+     * The bounding box only shrinks when the cell was the last one of the district in an extreme row or column, and then it moves
+     * inwards to the next row or column that still has a cell of the district. This never looks past the district's old bounding box,
+     * and backtracking usually returns cells that were just claimed on the edge of the district, so this is O(1) in practice.
+     * @param index Integer index of the cell that left the district
+     * @param districtNumber Integer district number of the district
+     * @return void
+     */
+    private void removeFromDistrictShape(int index, int districtNumber) {
+        int row = index / N;
+        int col = index % N;
+        districtSizes[districtNumber]--;
+        if(data == null && boardPositions[index] != -1) {
+            districtCells[districtNumber].remove(boardPositions[index]);
+        }
+        districtPerimeters[districtNumber] -= 4 - 2 * neighborsInDistrict(index, districtNumber);
+        districtRowCounts[districtNumber * M + row]--;
+        districtColCounts[districtNumber * N + col]--;
+        if(districtSizes[districtNumber] == 0) {
+            districtMinRows[districtNumber] = M;
+            districtMaxRows[districtNumber] = -1;
+            districtMinCols[districtNumber] = N;
+            districtMaxCols[districtNumber] = -1;
+            return;
+        }
+        while(districtRowCounts[districtNumber * M + districtMinRows[districtNumber]] == 0) {
+            districtMinRows[districtNumber]++;
+        }
+        while(districtRowCounts[districtNumber * M + districtMaxRows[districtNumber]] == 0) {
+            districtMaxRows[districtNumber]--;
+        }
+        while(districtColCounts[districtNumber * N + districtMinCols[districtNumber]] == 0) {
+            districtMinCols[districtNumber]++;
+        }
+        while(districtColCounts[districtNumber * N + districtMaxCols[districtNumber]] == 0) {
+            districtMaxCols[districtNumber]--;
+        }
+    }
+    
+    // counts the neighbors of a cell that belong to a given district
+    private int neighborsInDistrict(int index, int districtNumber) {
+        int count = 0;
+        for (int d = 0; d < 4; d++) {
+            int neighbor = neighborTable[4 * index + d];
+            if(neighbor != -1 && getDistrictNumber(neighbor) == districtNumber) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * @param districtNumber Integer district number, where 1 <= districtNumber <= n
+     * @return Integer number of cells in that district
+     */
+    public int districtSize(int districtNumber) {
+        return districtSizes[districtNumber];
+    }
+    
+    /**
+     * @param districtNumber Integer district number, where 1 <= districtNumber <= n
+     * @return Integer perimeter of that district (the number of cell edges between the district and the cells outside of it)
+     */
+    public int districtPerimeter(int districtNumber) {
+        return districtPerimeters[districtNumber];
+    }
+    
+    /**
+     * @param districtNumber Integer district number of a district that is not empty, where 1 <= districtNumber <= n
+     * @return Integer number of rows spanned by the district's bounding box
+     */
+    public int districtLength(int districtNumber) {
+        return districtMaxRows[districtNumber] - districtMinRows[districtNumber] + 1; // add one to count properly
+    }
+    
+    /**
+     * @param districtNumber Integer district number of a district that is not empty, where 1 <= districtNumber <= n
+     * @return Integer number of columns spanned by the district's bounding box
+     */
+    public int districtWidth(int districtNumber) {
+        return districtMaxCols[districtNumber] - districtMinCols[districtNumber] + 1;
+    }
+    
+    /**
+     * Updates the free neighbor counts of a cell's neighbors after the cell has been claimed or returned, and moves each free neighbor
+     * to the bucket for its new count. This touches at most four cells, so it is O(1).
+     * @param index Integer index of the cell that was claimed or returned
+     * @param nowFree Boolean value for the statement: The cell was returned (rather than claimed).
+     * @return void
+     */
+    private void updateFreeNeighborCounts(int index, boolean nowFree) {
+        int change = nowFree ? 1 : -1;
+        if(!nowFree) {
+            cellsByFreeNeighborCount[freeNeighborCounts[index]].remove(index);
+        }
+        for (int d = 0; d < 4; d++) {
+            int neighbor = neighborTable[4 * index + d];
+            if(neighbor == -1) {
+                continue;
+            }
+            if(getDistrictNumber(neighbor) == 0) {
+                cellsByFreeNeighborCount[freeNeighborCounts[neighbor]].remove(neighbor);
+                freeNeighborCounts[neighbor] += change;
+                cellsByFreeNeighborCount[freeNeighborCounts[neighbor]].add(neighbor);
+            } else {
+                freeNeighborCounts[neighbor] += change;
+            }
+        }
+        if(nowFree) {
+            cellsByFreeNeighborCount[freeNeighborCounts[index]].add(index);
+        }
+    }
+    
+    /**
+     * NOTE: The count is only kept up to date for changes made through setDistrictNumber().
+     * @param index Integer index of some cell
+     * @return Integer number of free neighbors of the cell
+     */
+    public int freeNeighborCount(int index) {
+        return freeNeighborCounts[index];
+    }
+    
+    /**
+     * Gives the bucket of free cells that have a given number of free neighbors, e.g. 0 for isolated cells and 1 for dead ends.
+     * NOTE: The returned set belongs to this Squaretopia and must not be modified. It is only kept up to date for changes made through setDistrictNumber().
+     * @param count Integer number of free neighbors, where 0 <= count <= 4
+     * @return IndexedCellSet containing every free cell with exactly count free neighbors
+     */
+    public IndexedCellSet cellsWithFreeNeighborCount(int count) {
+        return cellsByFreeNeighborCount[count];
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @return Boolean value for the statement: This cell is checked.
+     */
+    public boolean isChecked(int index) {
+        return data == null ? checkedCells[index] : data[index / N][index % N].checked;
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @param checked Boolean checked value that the cell will be assigned
+     * @return void
+     */
+    public void setChecked(int index, boolean checked) {
+        if(data != null) {
+            data[index / N][index % N].checked = checked;
+            return;
+        }
+        checkedCells[index] = checked;
+        int position = boardPositions[index];
+        if(position != -1) {
+            if(checked) {
+                freeCells.remove(position);
+            } else {
+                freeCells.add(position);
+            }
+        }
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @return Integer direction of the cell relative to its parent, where -1 is not yet defined, 1 is above, 2 is right, 3 is below, 4 is left
+     */
+    public int getDirection(int index) {
+        return data == null ? cellDirections[index] : data[index / N][index % N].direction;
+    }
+    
+    /**
+     * @param index Integer index of some cell
+     * @param direction Integer direction of the cell relative to its parent (see getDirection())
+     * @return void
+     */
+    public void setDirection(int index, int direction) {
+        if(data == null) {
+            cellDirections[index] = direction;
+        } else {
+            data[index / N][index % N].direction = direction;
+        }
+    }
+    
+    /**
+     * Looks up a neighbor of a cell in the precomputed neighbor table.
+     * @param index Integer index of some cell
+     * @param direction Integer direction of the neighbor, where 1 is above, 2 is right, 3 is below, 4 is left
+     * @return Integer index of the neighbor (-1 if the neighbor would be off the grid)
+     */
+    public int neighbor(int index, int direction) {
+        return neighborTable[4 * index + direction - 1];
+    }
+    
+    /**
+     * Finds the free (unclaimed inner) neighbors of a cell without allocating anything. Bit d - 1 of the returned mask is set when the
+     * neighbor in direction d is free, so the free neighbors can be visited with neighbor(index, Integer.numberOfTrailingZeros(mask) + 1).
+     * @param index Integer index of some cell
+     * @return Integer neighbor mask of the cell's free neighbors
+     */
+    public int freeNeighborMask(int index) {
+        int mask = 0;
+        for (int d = 0; d < 4; d++) {
+            int neighbor = neighborTable[4 * index + d];
+            if(neighbor != -1 && getDistrictNumber(neighbor) == 0) {
+                mask |= 1 << d;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * @return Integer number of cells in this Squaretopia (including the outer padding layer), which is one more than the largest cell index
+     */
+    public int cellCount() {
+        return M * N;
+    }
+    
+    /**
+     * Gives the district numbers of this Squaretopia as a single array indexed by cell index. A flat Squaretopia returns its backing array,
+     * so the scans below run directly over it; otherwise the district numbers are copied out of the SquaretopiaCell objects once.
+     * @return int[] containing the district number of each cell
+     */
+    private int[] districtNumbers() {
+        if(data == null) {
+            return districtNumbers;
+        }
+        int[] copy = new int[M * N];
+        for (int i = 0; i < M; i++) {
+            for (int j = 0; j < N; j++) {
+                copy[i * N + j] = data[i][j].districtNumber;
+            }
+        }
+        return copy;
     }
     
     /**
@@ -41,14 +545,15 @@ final public class SquaretopiaMatrix {
      * @return void
      */
     public void show() {
+        int[] districts = districtNumbers();
         for (int i = 1; i < M - 1; i++) { // exclude outer rows of -1s
             for (int j = 1; j < N - 1; j++) { // exclude outer columns of -1s
-                int districtNum = data[i][j].districtNumber;
+                int districtNum = districts[i * N + j];
                 if(districtNum >= 0 && districtNum <= 9) {
-                    System.out.print("   " + data[i][j].districtNumber);
+                    System.out.print("   " + districtNum);
                 }
                 else {
-                    System.out.print("  " + data[i][j].districtNumber);
+                    System.out.print("  " + districtNum);
                 }
             }
             System.out.print("");
@@ -62,7 +567,7 @@ final public class SquaretopiaMatrix {
      * @return Set<SquaretopiaCell> containing all the inner cells of this Squaretopia matrix
      */
     public Set<SquaretopiaCell> generateSetOfFreeCells() {
-        int matrixLength = data.length; // assumes square matrix
+        int matrixLength = M; // assumes square matrix
         Set<SquaretopiaCell> setOfCells = new HashSet<>();
         for(int i = 1; i < matrixLength - 1; i++) { // does not add perimeter padding cells to the set 
             for(int j = 1; j < matrixLength - 1; j++) {
@@ -72,6 +577,32 @@ final public class SquaretopiaMatrix {
         return setOfCells;
     }
     
+    /**
+     * Creates a set containing the indices of all the inner Squaretopia cells.
+     * NOTE: This method assumes that all inner cells are unclaimed, so it should only be called after the initialization of this Squaretopia.
+     * @return IndexedCellSet containing the indices of all the inner cells of this Squaretopia matrix
+     */
+    public IndexedCellSet generateIndexedSetOfFreeCells() {
+        IndexedCellSet setOfCells = new IndexedCellSet(cellCount());
+        resetFreeCells(setOfCells);
+        return setOfCells;
+    }
+    
+    /**
+     * Empties a set and refills it with the indices of all the inner Squaretopia cells, in the same order as generateIndexedSetOfFreeCells().
+     * NOTE: This method is meant to be called together with reset(), so that a reused matrix and its set of free cells start over together.
+     * @param setOfCells IndexedCellSet that was created for this Squaretopia (see generateIndexedSetOfFreeCells())
+     * @return void
+     */
+    public void resetFreeCells(IndexedCellSet setOfCells) {
+        setOfCells.clear();
+        for(int i = 1; i < M - 1; i++) { // does not add perimeter padding cells to the set 
+            for(int j = 1; j < N - 1; j++) {
+                setOfCells.add(index(i, j));
+            }
+        }
+    }
+    
     /**
      * Helpful method for debugging. Prints a matrix containing the SquaretopiaCell.checked values for each cell in this Squaretopia.
      * @return void
@@ -79,7 +610,7 @@ final public class SquaretopiaMatrix {
     public void printCheckedValues() {
         for (int i = 1; i < M - 1; i++) {
             for (int j = 1; j < N - 1; j++) { 
-                System.out.print(" " + data[i][j].checked);
+                System.out.print(" " + isChecked(index(i, j)));
             }
             System.out.print("");
             System.out.println("");
@@ -89,19 +620,32 @@ final public class SquaretopiaMatrix {
     /**
      * Determines if this Squaretopia matrix is valid. An invalid matrix contains at least one isolated group of k Squaretopia cells, 
      * where n, the number of cells in each district, doesn't divide k.
-     * NOTE: This method assumes that this Squaretopia matrix is a square.
-     * @param matrix SquaretopiaMatrix whose validity we will check
+     * A flat Squaretopia fills the groups word by word on its row bitboard of free cells (see RowBitboard.fillComponent()), which is
+     * what makes this check affordable on large grids.
+     * NOTE: This method assumes that this Squaretopia matrix is a square. It flood fills the groups with scratch arrays owned by this Squaretopia, so it allocates nothing.
      * @return Boolean value for the statement: This matrix is valid.
      */ 
     public Boolean validMap() {
-        int matrixLength = data.length;
-        SquaretopiaMatrix matrixCopy = duplicateMatrix();
+        if(data == null) {
+            int districtSize = M - 2;
+            unvisitedCells.copyFrom(freeCells);
+            for(int cell = unvisitedCells.nextCell(0); cell >= 0; cell = unvisitedCells.nextCell(cell + 1)) {
+                if(componentCells.fillComponent(freeCells, cell) % districtSize != 0) {
+                    return false;
+                }
+                unvisitedCells.removeAll(componentCells);
+            }
+            return true;
+        }
+        int matrixLength = M;
+        int stamp = nextVisitStamp();
         for(int i = 1; i < matrixLength - 1; i++) {
             for (int j = 1; j < matrixLength - 1; j++) {
-                if (matrixCopy.data[i][j].checked == false) {
-                    // the set below contains all the unchecked neighbors that a rook chess piece can reach when starting from the i, j location
-                    Set<SquaretopiaCell> neighborCells = findContiguousNeighbors(matrixCopy, matrixCopy.data[i][j]);  
-                        if(neighborCells.size() % (matrixLength - 2) !=  0) {
+                int k = index(i, j);
+                if (isChecked(k) == false && visitStamps[k] != stamp) {
+                    // count all the unchecked neighbors that a rook chess piece can reach when starting from the i, j location
+                    int groupSize = floodFill(k, stamp);
+                        if(groupSize % (matrixLength - 2) !=  0) {
                             return false;
                         }
                 }
@@ -110,19 +654,169 @@ final public class SquaretopiaMatrix {
         return true;
     }
     
+    /**
+     * Finds the size of every isolated group of unchecked cells in this Squaretopia (the groups that validMap() checks) without allocating.
+     * @param groupSizes int[] that receives the group sizes, in the order in which the groups' first cells appear row by row (it must be long enough for every group)
+     * @return Integer number of groups found
+     */
+    public int freeComponentSizes(int[] groupSizes) {
+        int numOfGroups = 0;
+        if(data == null) {
+            unvisitedCells.copyFrom(freeCells);
+            for(int cell = unvisitedCells.nextCell(0); cell >= 0; cell = unvisitedCells.nextCell(cell + 1)) {
+                groupSizes[numOfGroups++] = componentCells.fillComponent(freeCells, cell);
+                unvisitedCells.removeAll(componentCells);
+            }
+            return numOfGroups;
+        }
+        int stamp = nextVisitStamp();
+        for(int i = 1; i < M - 1; i++) {
+            for (int j = 1; j < N - 1; j++) {
+                int k = index(i, j);
+                if (isChecked(k) == false && visitStamps[k] != stamp) {
+                    groupSizes[numOfGroups++] = floodFill(k, stamp);
+                }
+            }
+        }
+        return numOfGroups;
+    }
+    
+    /**
+     * Determines if a claim can still lead to a valid map, without waiting for the claimed cell's district to be completed.
+     * Every group of free cells that touches the claimed cell also touches its district, so the district may still take cells from it.
+     * Whatever the district leaves behind of a group of k free cells must be split into districts of n cells, so the district has to take
+     * at least k % n cells from that group. If these minimums add up to more than the number of cells the district still needs, then no
+     * completion of the district gives a valid map.
+     * Claiming a cell can only split a group of free cells when the cell's free neighbors are not already connected through the eight
+     * cells around it, so the groups are only flood filled when this local cut test fails. A flat Squaretopia fills them on its row
+     * bitboard of free cells.
+     * NOTE: This method assumes that the claimed cell is an inner cell that has already been claimed.
+     * @param claimedCell Integer index of the cell that was just claimed
+     * @param districtSize Integer number of cells in each district (n)
+     * @param cellsStillNeeded Integer number of cells the claimed cell's district still needs to be completed
+     * @return Boolean value for the statement: This claim may still lead to a valid map.
+     */
+    public boolean claimKeepsMapValid(int claimedCell, int districtSize, int cellsStillNeeded) {
+        int freeNeighbors = freeNeighborMask(claimedCell);
+        if(Integer.bitCount(freeNeighbors) <= 1 || isLocallyConnected(claimedCell) == true) {
+            return true;
+        }
+        int cellsRequired = 0;
+        if(data == null) {
+            unvisitedCells.copyFrom(freeCells);
+            for (int mask = freeNeighbors; mask != 0; mask &= mask - 1) {
+                int position = boardPositions[neighborTable[4 * claimedCell + Integer.numberOfTrailingZeros(mask)]];
+                if(unvisitedCells.contains(position)) {
+                    cellsRequired += componentCells.fillComponent(freeCells, position) % districtSize;
+                    if(cellsRequired > cellsStillNeeded) {
+                        return false;
+                    }
+                    unvisitedCells.removeAll(componentCells);
+                }
+            }
+            return true;
+        }
+        int stamp = nextVisitStamp();
+        for (int mask = freeNeighbors; mask != 0; mask &= mask - 1) {
+            int neighbor = neighborTable[4 * claimedCell + Integer.numberOfTrailingZeros(mask)];
+            if(visitStamps[neighbor] != stamp) {
+                cellsRequired += floodFill(neighbor, stamp) % districtSize;
+                if(cellsRequired > cellsStillNeeded) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Determines if the free neighbors of a cell are connected to each other through the eight cells surrounding it. Walking around
+     * the ring above, above-right, right, below-right, below, below-left, left, above-left, consecutive ring cells are neighbors, so
+     * the free neighbors are connected when they all lie in a single run of free ring cells.
+     * NOTE: This method assumes that the cell is an inner cell, so all eight surrounding cells are on the grid.
+     * @param index Integer index of some inner cell
+     * @return Boolean value for the statement: The cell's free neighbors are connected through the ring of cells around it.
+     */
+    private boolean isLocallyConnected(int index) {
+        int runsWithANeighbor = 0;
+        boolean runHasANeighbor = false;
+        int firstGap = -1;
+        for (int r = 0; r < 8; r++) {
+            if(isChecked(index + ringOffsets[r]) == true) {
+                firstGap = r;
+                break;
+            }
+        }
+        if(firstGap == -1) { // the whole ring is free
+            return true;
+        }
+        // walk once around the ring starting just after a checked cell, so that every run of free cells is seen in one piece
+        for (int step = 1; step <= 8; step++) {
+            int r = (firstGap + step) % 8;
+            if(isChecked(index + ringOffsets[r]) == false) {
+                if(r % 2 == 0) { // even ring positions are the cell's four neighbors
+                    runHasANeighbor = true;
+                }
+            } else if(runHasANeighbor) {
+                runsWithANeighbor++;
+                runHasANeighbor = false;
+            }
+        }
+        return runsWithANeighbor <= 1;
+    }
+    
+    /**
+     * Starts a new flood fill by bumping the visit stamp, which unmarks every cell without clearing visitStamps.
+     * @return Integer stamp of the new flood fill
+     */
+    private int nextVisitStamp() {
+        visitStamp++;
+        if(visitStamp == 0) { // the stamp wrapped around, so old stamps could be mistaken for new ones
+            Arrays.fill(visitStamps, 0);
+            visitStamp = 1;
+        }
+        return visitStamp;
+    }
+    
+    /**
+     * Counts the unchecked cells that a rook chess piece can reach when starting from a given cell, marking each of them with a stamp.
+     * This uses an explicit stack instead of recursion, so it cannot overflow the thread's stack on large grids, and it allocates nothing.
+     * @param start Integer index of an unchecked cell that is not yet marked with the stamp
+     * @param stamp Integer stamp of the current flood fill (see nextVisitStamp())
+     * @return Integer number of cells reached, including the start cell
+     */
+    private int floodFill(int start, int stamp) {
+        int groupSize = 0;
+        int stackSize = 0;
+        visitStamps[start] = stamp;
+        floodFillStack[stackSize++] = start;
+        while(stackSize > 0) {
+            int cell = floodFillStack[--stackSize];
+            groupSize++;
+            for (int d = 0; d < 4; d++) {
+                int neighbor = neighborTable[4 * cell + d];
+                if(neighbor != -1 && visitStamps[neighbor] != stamp && isChecked(neighbor) == false) {
+                    visitStamps[neighbor] = stamp;
+                    floodFillStack[stackSize++] = neighbor;
+                }
+            }
+        }
+        return groupSize;
+    }
+    
     /**
      * Creates a SquaretopiaMatrix duplicate of this Squaretopia matrix.
-     * NOTE: This method assumes that this Squaretopia matrix is a square.
+     * NOTE: This method assumes that this Squaretopia matrix is a square. The duplicate is always backed by SquaretopiaCell objects, even if this Squaretopia is flat.
      * @param matrix SquaretopiaMatrix that we will duplicate
      * @return void
      */
     public SquaretopiaMatrix duplicateMatrix() {
-        int matrixLength = data.length; // assumes matrix is a square
+        int matrixLength = M; // assumes matrix is a square
         SquaretopiaMatrix matrixDuplicate = new SquaretopiaMatrix(matrixLength, matrixLength);
         for(int i = 0; i < matrixLength; i++) {
             for(int j = 0; j < matrixLength; j++) {
                 // we only need the checked field to determine if a completed district is valid
-                matrixDuplicate.data[i][j].checked = data[i][j].checked;
+                matrixDuplicate.data[i][j].checked = isChecked(index(i, j));
             }
         }
         return matrixDuplicate;
@@ -130,56 +824,114 @@ final public class SquaretopiaMatrix {
     
     /**
      * Creates a set containing all the unchecked neighbors that a rook chess piece can reach when starting from a given location in this Squaretopia.
+     * A flat matrix fills the group word by word on its row bitboard of free cells (see RowBitboard.fillComponent()), and any other matrix
+     * flood fills it with its scratch stack, as validMap() does, so this no longer recurses once per cell, which overflowed the thread's
+     * stack on large grids.
+     * NOTE: Every cell in the returned set, including currentLocation, is marked as checked. A flat matrix has no cells of its own, so the
+     * returned cells are copies of its cells taken after they were checked.
      * @param matrix SquaretopiaMatrix that contains Squaretopia cells and some district assignments
      * @param currentLocation SquaretopiaCell whose contiguous unchecked neighbors we will find
      * @return Set<SquaretopiaCell> containing all the unchecked neighbors that a rook chess piece can reach when starting from currentLocation
      */
     public Set<SquaretopiaCell> findContiguousNeighbors (SquaretopiaMatrix matrix, SquaretopiaCell currentLocation) {
-        int curLocRow = currentLocation.row;
-        int curLocCol = currentLocation.col;
         Set<SquaretopiaCell> contiguousCells = new HashSet<>();
         contiguousCells.add(currentLocation);
         currentLocation.checked = true;
-        if(matrix.data[curLocRow - 1][curLocCol].checked == false) { // check availability of the cell above
-            contiguousCells.addAll(findContiguousNeighbors(matrix, matrix.data[curLocRow - 1][curLocCol]));
-        }
-        if(matrix.data[curLocRow + 1][curLocCol].checked == false) { // check availability of the cell below
-            contiguousCells.addAll(findContiguousNeighbors(matrix, matrix.data[curLocRow + 1][curLocCol]));
+        int row = currentLocation.row;
+        int col = currentLocation.col;
+        if(row < 1 || row > matrix.M - 2 || col < 1 || col > matrix.N - 2) {
+            return contiguousCells; // a padding cell has no unchecked neighbors
         }
-        if(matrix.data[curLocRow][curLocCol - 1].checked == false) { // check availability of the cell to the left
-            contiguousCells.addAll(findContiguousNeighbors(matrix, matrix.data[curLocRow][curLocCol - 1]));
+        int start = matrix.index(row, col);
+        if(matrix.data != null) {
+            int stamp = matrix.nextVisitStamp();
+            matrix.floodFill(start, stamp);
+            for(int i = 1; i < matrix.M - 1; i++) {
+                for(int j = 1; j < matrix.N - 1; j++) {
+                    if(matrix.visitStamps[matrix.index(i, j)] == stamp) {
+                        matrix.data[i][j].checked = true;
+                        contiguousCells.add(matrix.data[i][j]);
+                    }
+                }
+            }
+            return contiguousCells;
         }
-        if(matrix.data[curLocRow][curLocCol + 1].checked == false) { // check availability of the cell to the right
-            contiguousCells.addAll(findContiguousNeighbors(matrix, matrix.data[curLocRow][curLocCol + 1]));
+        RowBitboard region = matrix.unvisitedCells;
+        region.copyFrom(matrix.freeCells);
+        region.add(matrix.boardPositions[start]);
+        RowBitboard group = matrix.componentCells;
+        group.fillComponent(region, matrix.boardPositions[start]);
+        for(int cell = group.nextCell(0); cell >= 0; cell = group.nextCell(cell + 1)) {
+            int k = matrix.index(group.row(cell) + 1, group.col(cell) + 1);
+            matrix.setChecked(k, true);
+            SquaretopiaCell contiguousCell = new SquaretopiaCell(group.row(cell) + 1, group.col(cell) + 1);
+            contiguousCell.checked = true;
+            contiguousCell.districtNumber = matrix.getDistrictNumber(k);
+            contiguousCell.direction = matrix.getDirection(k);
+            contiguousCells.add(contiguousCell);
         }
         return contiguousCells;
     }
     
     
+    /**
+     * Calculates all four compactness scores of a finished Squaretopia partition without scanning the grid. The size, perimeter and
+     * bounding box of every district are kept up to date by setDistrictNumber() while the districts are grown, so this only reads them.
+     * The scores are then computed exactly as LengthWidth(), Reock(), Schwartzberg() and PolsbyPopper() compute them.
+     * NOTE: This method assumes that this Squaretopia is a square that has been fully partitioned into n districts of n cells.
+     * @param scores CompactnessScores for n districts that we will fill in (see CompactnessScores(int))
+     * @return CompactnessScores that were passed in, now holding the scores of this partition
+     */
+    public CompactnessScores calculateCompactnessScores(CompactnessScores scores) {
+        int numOfDistricts = M - 2;
+        int[] minRows = scores.minRows;
+        int[] maxRows = scores.maxRows;
+        int[] minCols = scores.minCols;
+        int[] maxCols = scores.maxCols;
+        int[] perimeters = scores.perimeters;
+        for (int d = 0; d < numOfDistricts; d++) {
+            minRows[d] = districtMinRows[d + 1];
+            maxRows[d] = districtMaxRows[d + 1];
+            minCols[d] = districtMinCols[d + 1];
+            maxCols[d] = districtMaxCols[d + 1];
+            perimeters[d] = districtPerimeters[d + 1];
+        }
+        return scores.computeScores();
+    }
+    
     /**
      * Calculates the perimeter of each district in a finished Squaretopia partition.
+     * A flat Squaretopia counts the adjacent cells of each district's row bitboard a word at a time (see RowBitboard.perimeter()).
      * @param matrix SquaretopiaMatrix that has been fully partitioned
      * @return int[] containing the perimeters of each district in the partition: with district 1's perimeter at index 0, district 2's perimeter at index 1, etc. 
      */
     public int[] calculatePerimeters() {
-        int numOfDistricts = data.length - 2;
+        int numOfDistricts = M - 2;
         int[] perimetersArray = new int[numOfDistricts];
+        if(data == null) {
+            for(int i = 0; i < numOfDistricts; i++) {
+                perimetersArray[i] = districtCells[i + 1].perimeter();
+            }
+            return perimetersArray;
+        }
+        int[] districts = districtNumbers();
         for(int i = 0; i < numOfDistricts; i++) {
             perimetersArray[i] = 4 * numOfDistricts;
         }
-        for(int i = 1; i < data.length - 1; i++) {
-            for(int j = 1; j < data.length - 1; j++) {
-                int districtNumOfCurrentCell = data[i][j].districtNumber;
-                if(districtNumOfCurrentCell == data[i - 1][j].districtNumber) {
+        for(int i = 1; i < M - 1; i++) {
+            for(int j = 1; j < N - 1; j++) {
+                int k = i * N + j;
+                int districtNumOfCurrentCell = districts[k];
+                if(districtNumOfCurrentCell == districts[k - N]) {
                     perimetersArray[districtNumOfCurrentCell - 1]--;
                 }
-                if(districtNumOfCurrentCell == data[i + 1][j].districtNumber) {
+                if(districtNumOfCurrentCell == districts[k + N]) {
                     perimetersArray[districtNumOfCurrentCell - 1]--;
                 }
-                if(districtNumOfCurrentCell == data[i][j - 1].districtNumber) {
+                if(districtNumOfCurrentCell == districts[k - 1]) {
                     perimetersArray[districtNumOfCurrentCell - 1]--;
                 }
-                if(districtNumOfCurrentCell == data[i][j + 1].districtNumber) {
+                if(districtNumOfCurrentCell == districts[k + 1]) {
                     perimetersArray[districtNumOfCurrentCell - 1]--;
                 }
             }
@@ -195,37 +947,38 @@ final public class SquaretopiaMatrix {
     public double LengthWidth() {
         // locate and save extrema cells
         double scoreTotal = 0;
-        double numOfDistricts = data.length - 2;
-        SquaretopiaCell[][] extrema = new SquaretopiaCell[(int) numOfDistricts][4]; // each district has four cells in this order min length, max length, min width, max width
-        for (int i = 1; i < data.length - 1; i++) {
-            for (int j = 1; j < data.length - 1; j++) {
-                int districtNumberOfThisCell = data[i][j].districtNumber;
-                SquaretopiaCell thisCell = data[i][j];
-                if(extrema[districtNumberOfThisCell - 1][0] == null) {
-                    extrema[districtNumberOfThisCell - 1][0] = thisCell;
-                    extrema[districtNumberOfThisCell - 1][1] = thisCell;
-                    extrema[districtNumberOfThisCell - 1][2] = thisCell;
-                    extrema[districtNumberOfThisCell - 1][3] = thisCell;
-                }
-                if(thisCell.row < extrema[districtNumberOfThisCell - 1][0].row) {
-                    extrema[districtNumberOfThisCell - 1][0] = thisCell;
+        double numOfDistricts = M - 2;
+        int[] districts = districtNumbers();
+        int[][] extrema = new int[(int) numOfDistricts][4]; // each district has four extrema in this order min row, max row, min column, max column
+        for (int i = 0; i < extrema.length; i++) {
+            extrema[i][0] = M;
+            extrema[i][1] = -1;
+            extrema[i][2] = N;
+            extrema[i][3] = -1;
+        }
+        for (int i = 1; i < M - 1; i++) {
+            for (int j = 1; j < N - 1; j++) {
+                int districtNumberOfThisCell = districts[i * N + j];
+                int[] extremaOfThisDistrict = extrema[districtNumberOfThisCell - 1];
+                if(i < extremaOfThisDistrict[0]) {
+                    extremaOfThisDistrict[0] = i;
                 }
-                if(thisCell.row > extrema[districtNumberOfThisCell - 1][1].row) {
-                    extrema[districtNumberOfThisCell - 1][1] = thisCell;
+                if(i > extremaOfThisDistrict[1]) {
+                    extremaOfThisDistrict[1] = i;
                 }
-                if(thisCell.col < extrema[districtNumberOfThisCell - 1][2].col) {
-                    extrema[districtNumberOfThisCell - 1][2] = thisCell;
+                if(j < extremaOfThisDistrict[2]) {
+                    extremaOfThisDistrict[2] = j;
                 }
-                if(thisCell.col > extrema[districtNumberOfThisCell - 1][3].col) {
-                    extrema[districtNumberOfThisCell - 1][3] = thisCell;
+                if(j > extremaOfThisDistrict[3]) {
+                    extremaOfThisDistrict[3] = j;
                 }
             }
         }
         double length;
         double width;
         for (int i = 0; i < extrema.length; i++) {
-            length = Math.abs(extrema[i][0].row - extrema[i][1].row) + 1; // add one to count properly
-            width = Math.abs(extrema[i][2].col - extrema[i][3].col) + 1;
+            length = extrema[i][1] - extrema[i][0] + 1; // add one to count properly
+            width = extrema[i][3] - extrema[i][2] + 1;
             if (length < width) {
                 scoreTotal += length / width;
             } else {
@@ -244,37 +997,38 @@ final public class SquaretopiaMatrix {
     public double Reock() {
         // locate and save extrema cells
         double scoreTotal = 0;
-        double numOfDistricts = data.length - 2;
-        SquaretopiaCell[][] extrema = new SquaretopiaCell[(int) numOfDistricts][4]; // each district has four cells in this order min length, max length, min width, max width
-        for (int i = 1; i < data.length - 1; i++) {
-            for (int j = 1; j < data.length - 1; j++) {
-                int districtNumberOfThisCell = data[i][j].districtNumber;
-                SquaretopiaCell thisCell = data[i][j];
-                if(extrema[districtNumberOfThisCell - 1][0] == null) {
-                    extrema[districtNumberOfThisCell - 1][0] = thisCell;
-                    extrema[districtNumberOfThisCell - 1][1] = thisCell;
-                    extrema[districtNumberOfThisCell - 1][2] = thisCell;
-                    extrema[districtNumberOfThisCell - 1][3] = thisCell;
-                }
-                if(thisCell.row < extrema[districtNumberOfThisCell - 1][0].row) {
-                    extrema[districtNumberOfThisCell - 1][0] = thisCell;
+        double numOfDistricts = M - 2;
+        int[] districts = districtNumbers();
+        int[][] extrema = new int[(int) numOfDistricts][4]; // each district has four extrema in this order min row, max row, min column, max column
+        for (int i = 0; i < extrema.length; i++) {
+            extrema[i][0] = M;
+            extrema[i][1] = -1;
+            extrema[i][2] = N;
+            extrema[i][3] = -1;
+        }
+        for (int i = 1; i < M - 1; i++) {
+            for (int j = 1; j < N - 1; j++) {
+                int districtNumberOfThisCell = districts[i * N + j];
+                int[] extremaOfThisDistrict = extrema[districtNumberOfThisCell - 1];
+                if(i < extremaOfThisDistrict[0]) {
+                    extremaOfThisDistrict[0] = i;
                 }
-                if(thisCell.row > extrema[districtNumberOfThisCell - 1][1].row) {
-                    extrema[districtNumberOfThisCell - 1][1] = thisCell;
+                if(i > extremaOfThisDistrict[1]) {
+                    extremaOfThisDistrict[1] = i;
                 }
-                if(thisCell.col < extrema[districtNumberOfThisCell - 1][2].col) {
-                    extrema[districtNumberOfThisCell - 1][2] = thisCell;
+                if(j < extremaOfThisDistrict[2]) {
+                    extremaOfThisDistrict[2] = j;
                 }
-                if(thisCell.col > extrema[districtNumberOfThisCell - 1][3].col) {
-                    extrema[districtNumberOfThisCell - 1][3] = thisCell;
+                if(j > extremaOfThisDistrict[3]) {
+                    extremaOfThisDistrict[3] = j;
                 }
             }
         }
         double length;
         double width;
         for (int i = 0; i < extrema.length; i++) {
-            length = Math.abs(extrema[i][0].row - extrema[i][1].row) + 1; // add one to count properly
-            width = Math.abs(extrema[i][2].col - extrema[i][3].col) + 1;
+            length = extrema[i][1] - extrema[i][0] + 1; // add one to count properly
+            width = extrema[i][3] - extrema[i][2] + 1;
             if (length < width) {
                 scoreTotal += numOfDistricts / (width * width);
             } else {
@@ -293,8 +1047,8 @@ final public class SquaretopiaMatrix {
     public double PolsbyPopper() {
         int[] perimetersArray = this.calculatePerimeters(); 
         double scoreTotal = 0;
-        int numOfDistricts = data.length - 2;
-        double areaOfADistrict = data.length - 2;
+        int numOfDistricts = M - 2;
+        double areaOfADistrict = M - 2;
         for(int i = 0; i < perimetersArray.length; i++) {
             scoreTotal += areaOfADistrict / Math.pow(Double.valueOf(perimetersArray[i]) / 4, 2);
         }
@@ -310,8 +1064,8 @@ final public class SquaretopiaMatrix {
     public double Schwartzberg() {
         int[] perimetersArray = this.calculatePerimeters(); 
         double scoreTotal = 0;
-        int numOfDistricts = data.length - 2;
-        double areaOfADistrict = data.length - 2;
+        int numOfDistricts = M - 2;
+        double areaOfADistrict = M - 2;
         for(int i = 0; i < perimetersArray.length; i++) {
             scoreTotal += (4 * Math.sqrt(Double.valueOf(areaOfADistrict))) / Double.valueOf(perimetersArray[i]);
         }
@@ -324,49 +1078,14 @@ final public class SquaretopiaMatrix {
      * @return double Reock compactness score (unrounded) of the only district in the incomplete partition 
      */ 
     public double singleReock() {
-        // locate and save extrema cells
-        double scoreTotal = 0;
-        double numOfDistricts = 1;
-        SquaretopiaCell[][] extrema = new SquaretopiaCell[(int) numOfDistricts][4]; // each district has four cells in this order min length, max length, min width, max width
-        for (int i = 1; i < data.length - 1; i++) {
-            for (int j = 1; j < data.length - 1; j++) {
-                int districtNumberOfThisCell = data[i][j].districtNumber;
-                if(districtNumberOfThisCell != 0) {
-                    SquaretopiaCell thisCell = data[i][j];
-                    if(extrema[districtNumberOfThisCell - 1][0] == null) {
-                        extrema[districtNumberOfThisCell - 1][0] = thisCell;
-                        extrema[districtNumberOfThisCell - 1][1] = thisCell;
-                        extrema[districtNumberOfThisCell - 1][2] = thisCell;
-                        extrema[districtNumberOfThisCell - 1][3] = thisCell;
-                    }
-                    if(thisCell.row < extrema[districtNumberOfThisCell - 1][0].row) {
-                        extrema[districtNumberOfThisCell - 1][0] = thisCell;
-                    }
-                    if(thisCell.row > extrema[districtNumberOfThisCell - 1][1].row) {
-                        extrema[districtNumberOfThisCell - 1][1] = thisCell;
-                    }
-                    if(thisCell.col < extrema[districtNumberOfThisCell - 1][2].col) {
-                        extrema[districtNumberOfThisCell - 1][2] = thisCell;
-                    }
-                    if(thisCell.col > extrema[districtNumberOfThisCell - 1][3].col) {
-                        extrema[districtNumberOfThisCell - 1][3] = thisCell;
-                    }
-                }
-            }
+        // the bounding box of district 1 is kept up to date by setDistrictNumber(), so this needs no scan of the grid
+        double length = districtLength(1);
+        double width = districtWidth(1);
+        if (length < width) {
+            return (M - 2) / (width * width);
+        } else {
+            return (M - 2) / (length * length);
         }
-        double length;
-        double width;
-        for (int i = 0; i < extrema.length; i++) {
-            length = Math.abs(extrema[i][0].row - extrema[i][1].row) + 1; // add one to count properly
-            width = Math.abs(extrema[i][2].col - extrema[i][3].col) + 1;
-            if (length < width) {
-                scoreTotal += (data.length - 2) / (width * width);
-            } else {
-                scoreTotal += (data.length - 2) / (length * length);
-            }
-        }
-        double averageScore = scoreTotal / numOfDistricts;
-        return averageScore;
     }
     
 }
@@ -0,0 +1,59 @@
+package partition;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TextResultSink.java
+ * TextResultSink writes results in the text format the Partition methods have always printed (see TrialResult.toString()). Every
+ * result is formatted in memory and handed to a large buffered writer in one write, instead of one console print per cell, so the
+ * console or file is only written to when the buffer fills up or the sink is flushed.
+ * NOTE: Flushing the sink flushes the stream it writes to, but the stream is never closed by this sink.
+ */
+public final class TextResultSink implements ResultSink {
+
+    private static final int BUFFER_SIZE = 1 << 16; // characters held before they are written to the stream
+
+    private final Writer writer; // buffered writer over the stream we write to
+
+    /**
+     * Constructs a sink that writes to System.out, which is the default sink of the Partition methods.
+     * @return void
+     */
+    public TextResultSink() {
+        this(System.out);
+    }
+
+    /**
+     * Constructs a sink that writes to a stream.
+     * @param out OutputStream that we will write the results to
+     * @return void
+     */
+    public TextResultSink(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void accept(TrialResult result) {
+        try {
+            writer.write(result.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package partition;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * TrialEvent.java
+ * TrialEvent is a JDK Flight Recorder event that is committed for every accepted trial, so that the slow trials in the heavy tail of
+ * the backtracking search can be found in a recording along with how much searching each of them took. The events only cost
+ * anything while a recording is running, e.g. with java -XX:StartFlightRecording=filename=run.jfr ...
+ */
+@Name("partition.Trial")
+@Label("Trial")
+@Category("Squaretopia")
+@Description("A valid sample drawn by a sampler")
+@StackTrace(false)
+final class TrialEvent extends jdk.jfr.Event {
+
+    @Label("Trial Index")
+    int trialIndex;
+
+    @Label("Trial Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long trialTime;
+
+    @Label("Cells Claimed")
+    long cellsClaimed;
+
+    @Label("Cells Returned")
+    long cellsReturned;
+
+    @Label("District Failures")
+    long districtFailures;
+
+    @Label("Map Rejections")
+    long mapRejections;
+
+}
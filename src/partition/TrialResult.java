@@ -0,0 +1,162 @@
+package partition;
+
+/**
+ * TrialResult.java
+ * TrialResult is the outcome of one trial: the district numbers of the inner Squaretopia cells and, for partitions, the compactness
+ * scores of the map. It holds no reference to the SquaretopiaMatrix it came from, so the matrix can be reused by the next trial.
+ * Samplers that know how likely their sample was to be drawn also record the log of that probability (see logProposal()).
+ */
+public final class TrialResult {
+
+    private final int trialIndex;  // index of the trial that produced this result
+    private final int rows;        // number of inner rows of the Squaretopia
+    private final int columns;     // number of inner columns of the Squaretopia
+    private final int[] districts; // district number of each inner cell, row after row
+    private final double[] scores; // compactness scores (LW RE SB PP) of the map (null if the trial has no scores)
+    private final double logProposal; // log of the probability with which the sampler drew the map (NaN if the sampler does not record it)
+
+    /**
+     * Constructs the result of a trial from its Squaretopia.
+     * @param trialIndex Integer index of the trial that produced this result
+     * @param matrix SquaretopiaMatrix that the trial districted
+     * @param scores Double array of the compactness scores (LW RE SB PP) of the map (null if the trial has no scores)
+     * @return void
+     */
+    public TrialResult(int trialIndex, SquaretopiaMatrix matrix, double[] scores) {
+        this(trialIndex, matrix, scores, Double.NaN);
+    }
+
+    /**
+     * Constructs the result of a trial from its Squaretopia, along with the log of the probability with which the sampler drew it.
+     * @param trialIndex Integer index of the trial that produced this result
+     * @param matrix SquaretopiaMatrix that the trial districted
+     * @param scores Double array of the compactness scores (LW RE SB PP) of the map (null if the trial has no scores)
+     * @param logProposal Double log of the probability with which the sampler drew the map (see logProposal())
+     * @return void
+     */
+    public TrialResult(int trialIndex, SquaretopiaMatrix matrix, double[] scores, double logProposal) {
+        this.trialIndex = trialIndex;
+        this.rows = matrix.numberOfRows() - 2; // exclude outer rows of -1s
+        this.columns = matrix.numberOfColumns() - 2; // exclude outer columns of -1s
+        this.districts = new int[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                districts[i * columns + j] = matrix.getDistrictNumber(matrix.index(i + 1, j + 1));
+            }
+        }
+        this.scores = scores;
+        this.logProposal = logProposal;
+    }
+
+    /**
+     * Constructs a result from district numbers that were stored earlier (see BinaryResultSink.read()).
+     * @param trialIndex Integer index of the trial that produced this result
+     * @param rows Integer number of inner rows of the Squaretopia
+     * @param columns Integer number of inner columns of the Squaretopia
+     * @param districts Integer array of the district number of each inner cell, row after row (it is kept, not copied)
+     * @param scores Double array of the compactness scores (LW RE SB PP) of the map (null if the trial has no scores)
+     * @return void
+     */
+    public TrialResult(int trialIndex, int rows, int columns, int[] districts, double[] scores) {
+        this(trialIndex, rows, columns, districts, scores, Double.NaN);
+    }
+
+    /**
+     * Constructs a result from district numbers, along with the log of the probability with which the sampler drew them.
+     * @param trialIndex Integer index of the trial that produced this result
+     * @param rows Integer number of inner rows of the Squaretopia
+     * @param columns Integer number of inner columns of the Squaretopia
+     * @param districts Integer array of the district number of each inner cell, row after row (it is kept, not copied)
+     * @param scores Double array of the compactness scores (LW RE SB PP) of the map (null if the trial has no scores)
+     * @param logProposal Double log of the probability with which the sampler drew the map (see logProposal())
+     * @return void
+     */
+    public TrialResult(int trialIndex, int rows, int columns, int[] districts, double[] scores, double logProposal) {
+        this.trialIndex = trialIndex;
+        this.rows = rows;
+        this.columns = columns;
+        this.districts = districts;
+        this.scores = scores;
+        this.logProposal = logProposal;
+    }
+
+    /**
+     * @return Integer index of the trial that produced this result
+     */
+    public int trialIndex() {
+        return trialIndex;
+    }
+
+    /**
+     * @return Integer number of inner rows of the Squaretopia
+     */
+    public int numberOfRows() {
+        return rows;
+    }
+
+    /**
+     * @return Integer number of inner columns of the Squaretopia
+     */
+    public int numberOfColumns() {
+        return columns;
+    }
+
+    /**
+     * @param row Integer row of some inner cell, where 0 <= row < number of inner rows
+     * @param col Integer column of some inner cell, where 0 <= col < number of inner columns
+     * @return Integer district number of that cell
+     */
+    public int districtNumber(int row, int col) {
+        return districts[row * columns + col];
+    }
+
+    /**
+     * @return Double array of the compactness scores (LW RE SB PP) of the map (null if the trial has no scores)
+     */
+    public double[] scores() {
+        return scores;
+    }
+
+    /**
+     * Gives the log of the probability with which the sampler drew this map. For UniformPartitioner, this is -log of the number of
+     * partitions, the probability of the map itself. For the samplers built on a DistrictingEngine (BitboardPartitioner included), it
+     * is the probability of the search that led to the map, including the branches it backtracked out of (see DistrictingEngine.logProposal()
+     * for what such a weight does and does not correct). Importance weights exp(-logProposal()) are best taken relative to the largest
+     * one, since they overflow on large maps.
+     * NOTE: This is not written by TextResultSink or BinaryResultSink, so results read back from a file do not have it.
+     * @return double log proposal probability of the map (NaN if the sampler does not record it)
+     */
+    public double logProposal() {
+        return logProposal;
+    }
+
+    /**
+     * Formats this result the way the Partition methods have always printed it: the districted Squaretopia (see SquaretopiaMatrix.show()),
+     * the rounded compactness scores if there are any, and an empty line.
+     * @return String of the formatted result
+     */
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        // COMMENT OUT THE LOOP BELOW TO NOT OUTPUT THE DISTRICTED SQUARETOPIA
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int districtNum = districts[i * columns + j];
+                string.append(districtNum >= 0 && districtNum <= 9 ? "   " : "  ").append(districtNum);
+            }
+            string.append(System.lineSeparator());
+        }
+        // COMMENT OUT THE BLOCK BELOW TO NOT OUTPUT THE SCORES OF THE DISTRICTED SQUARETOPIA
+        if(scores != null) {
+            for (int k = 0; k < scores.length; k++) {
+                if(k > 0) {
+                    string.append(" ");
+                }
+                string.append(Math.round(scores[k] * 100));
+            }
+            string.append(System.lineSeparator());
+        }
+        return string.append(System.lineSeparator()).toString();
+    }
+
+}
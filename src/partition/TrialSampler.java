@@ -0,0 +1,26 @@
+package partition;
+
+/**
+ * TrialSampler.java
+ * TrialSampler generates one valid Squaretopia sample per call. Every Partitioner and districter class is a TrialSampler whose
+ * instances own their matrix and DistrictingEngine, so a sampler must only ever be used by one thread at a time. The random number
+ * generator of each trial comes from the sampler's RandomStreams, so with seeded streams a trial only depends on its index.
+ */
+@FunctionalInterface
+public interface TrialSampler {
+
+    /**
+     * Generates one valid sample, retrying internally until a sample is valid.
+     * @param trialIndex Integer index of the trial, which is recorded in the result and picks the trial's random number generator
+     * @return TrialResult of the sample
+     */
+    TrialResult sample(int trialIndex);
+
+    /**
+     * @return SearchMetrics that count the search behind this sampler's trials (null if the sampler keeps none)
+     */
+    default SearchMetrics metrics() {
+        return null;
+    }
+
+}
@@ -1,15 +1,20 @@
 package partition;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.random.RandomGenerator;
 
 /**
  * Joshua Mariz 05/05/2021
  * UnboundedSingleDistricter.java
  * UnboundedSingleDistricter uniformly at random generates a district of size n in a (2n-1) by (2n-1) Squaretopia
  */
-public class UnboundedSingleDistricter {
+public class UnboundedSingleDistricter implements TrialSampler {
+    
+    private final SquaretopiaMatrix matrix;   // Squaretopia that every trial of this sampler districts again
+    private final IndexedCellSet freeCells;   // free cells of matrix
+    private final DistrictingEngine engine;   // this sampler's own districting engine
+    private final RandomStreams streams;      // random number generator of each trial
+    private final RestartSchedule schedule;   // work budget of each attempt at a trial
+    private final int centralCell;            // cell that every district starts from
     
     /**
      * Prepares the Squaretopia unbounded single-districting process.
@@ -19,157 +24,90 @@ public class UnboundedSingleDistricter {
      * @return void
      */
     public static void Partition (int size, int numOfTrials) {
-        int adjustedSize = ((size - 1) * 2 + 1) + 2; // add 2 for compatibility with outer padding of zeroes
-        int trialsConducted = 0;
-        while(trialsConducted < numOfTrials) {
-            SquaretopiaMatrix Squaretopia = new SquaretopiaMatrix(adjustedSize, adjustedSize);            
-            Set<SquaretopiaCell> freeCells = Squaretopia.generateSetOfFreeCells();
-            SquaretopiaCell claimedCell = Squaretopia.data[size][size]; // we must claim the central cell first to allow free generation of districts
-            Set<SquaretopiaCell> currentDistrict = new HashSet<>();
-            Set<SquaretopiaCell> currentDistrictFreeNeighbors = new HashSet<>();
-            Set<SquaretopiaCell> recentlyAddedTransitions = new HashSet<>();
-            
-            claimer(Squaretopia, freeCells, currentDistrict, claimedCell);
-            currentDistrictFreeNeighbors.addAll(getTransitions(Squaretopia, claimedCell));
-            recentlyAddedTransitions.addAll(getTransitions(Squaretopia, claimedCell));
-            
-            while(freeCells.size() > ((adjustedSize - 2) * (adjustedSize - 2) - size)) { // we only need to generate one district
-                recursiveDistricter(Squaretopia, freeCells, currentDistrict, currentDistrictFreeNeighbors, recentlyAddedTransitions);
-                currentDistrict.clear();
-                currentDistrictFreeNeighbors.clear();
-            }
-            Squaretopia.show();
-            System.out.println("");
-            trialsConducted++;
-        }
-        
-    }
-    
-    // recursive algorithm
-    public static SquaretopiaMatrix recursiveDistricter (SquaretopiaMatrix matrix, Set<SquaretopiaCell> freeCells, Set<SquaretopiaCell> currentDistrict, Set<SquaretopiaCell> allPossibleTransitions, Set<SquaretopiaCell> recentlyAddedTransitions) {
-          if(currentDistrict.size() == (int) (((matrix.data.length - 2) - 1) / 2 + 1)) { // assumes matrix is a square! And expands grid so that all single district classes can be freely generated
-              return matrix;
-          }
-          
-          Set<SquaretopiaCell> newAllPossibleNeighbors = new HashSet<>();
-          newAllPossibleNeighbors.addAll(allPossibleTransitions);
-          Set<SquaretopiaCell> newRecentlyAddedTransitions = new HashSet<>();
-          
-          while(newAllPossibleNeighbors.size() != 0) {
-              SquaretopiaCell nextCell = isolatedCell(matrix, newAllPossibleNeighbors);
-              if(nextCell == null) {
-                  nextCell = randomCell(newAllPossibleNeighbors);
-              }
-              claimer(matrix, freeCells, currentDistrict, nextCell);
-              newAllPossibleNeighbors.remove(nextCell);
-              newRecentlyAddedTransitions = recentlyAddedTransitions(newAllPossibleNeighbors, getTransitions(matrix, nextCell));
-              newAllPossibleNeighbors.addAll(getTransitions(matrix, nextCell));
-              if(recursiveDistricter(matrix, freeCells, currentDistrict, newAllPossibleNeighbors, newRecentlyAddedTransitions) == null) {
-                  newAllPossibleNeighbors.remove(nextCell);
-                  returner(matrix, freeCells, currentDistrict, nextCell);
-                  newAllPossibleNeighbors.removeAll(newRecentlyAddedTransitions);
-              } else {
-                  return matrix;
-              }
-          }
-          return null;
+        Partition(size, numOfTrials, PartitionOptions.DEFAULT);
     }
     
-    // chooses a cell uniformly at random from the set of free cells
-    public static SquaretopiaCell randomCell(Set<SquaretopiaCell> set) {
-        SquaretopiaCell chosenCell = new SquaretopiaCell(-1, -1);
-        int numOfCells = set.size();
-        int chosenCellIndex = (int) Math.ceil((Math.random() * numOfCells));
-        Iterator<SquaretopiaCell> it = set.iterator();
-        for (int i = 0; i < chosenCellIndex; i++) {
-            chosenCell = it.next();
-        }
-        return chosenCell;
-    }
-    
-    // determines which district we are constructing
-    public static int getCurrentDistrictNumber(SquaretopiaMatrix matrix, Set<SquaretopiaCell> freeCells) {
-        int n = matrix.data.length - 2; // assumes matrix is a square and subtract 2 because of outer layer
-        int currentDistrictNumber = (int) Math.ceil( Double.valueOf(n * n - freeCells.size()) / n );
-        return currentDistrictNumber;
+    /**
+     * Prepares the Squaretopia unbounded single-districting process with the given options (see PartitionOptions).
+     * NOTE: This method forces the central cell of the adjusted matrix to be the first cell in the district. This allows us to generate unbounded districts.
+     * @param size Integer number of the Squaretopia's size
+     * @param numOfTrials Integer number for the number of single districts we will generate
+     * @param options PartitionOptions that choose the restart schedule, random streams, result sink and runner of the run
+     * @return void
+     */
+    public static void Partition (int size, int numOfTrials, PartitionOptions options) {
+        options.run(numOfTrials, streams -> new UnboundedSingleDistricter(size, streams, options.schedule()));
     }
     
-    // gets a specified cell's free neighbors
-    public static Set<SquaretopiaCell> getTransitions (SquaretopiaMatrix matrix, SquaretopiaCell currentLocation) {
-        int curLocRow = currentLocation.row;
-        int curLocCol = currentLocation.col;
-        Set<SquaretopiaCell> possibleTransitions = new HashSet<>();
-        if(matrix.data[curLocRow - 1][curLocCol].districtNumber == 0) { // check availability of the cell above
-            possibleTransitions.add(new SquaretopiaCell(curLocRow - 1, curLocCol));
-        }
-        if(matrix.data[curLocRow + 1][curLocCol].districtNumber == 0) { // check availability of the cell below
-            possibleTransitions.add(new SquaretopiaCell(curLocRow + 1, curLocCol));
-        }
-        if(matrix.data[curLocRow][curLocCol - 1].districtNumber == 0) { // check availability of the cell to the left
-            possibleTransitions.add(new SquaretopiaCell(curLocRow, curLocCol - 1));
-        }
-        if(matrix.data[curLocRow][curLocCol + 1].districtNumber == 0) { // check availability of the cell to the right
-            possibleTransitions.add(new SquaretopiaCell(curLocRow, curLocCol + 1));
-        }
-        return possibleTransitions;
+    /**
+     * Constructs a sampler that generates a district of size n in a (2n-1) by (2n-1) Squaretopia, with a random seed.
+     * NOTE: This method forces the central cell of the adjusted matrix to be the first cell in the district. This allows us to generate unbounded districts.
+     * @param size Integer number of the Squaretopia's size
+     * @return void
+     */
+    public UnboundedSingleDistricter (int size) {
+        this(size, RandomStreams.unseeded());
     }
     
-    // updates the matrix
-    public static SquaretopiaMatrix updateMatrix(SquaretopiaMatrix matrix, Set<SquaretopiaCell> freeCells, SquaretopiaCell claimedCell) {
-        int claimedCellDistrict = matrix.data[claimedCell.row][claimedCell.col].districtNumber;
-        if(claimedCellDistrict == 0) {
-            matrix.data[claimedCell.row][claimedCell.col].districtNumber = getCurrentDistrictNumber(matrix, freeCells);
-            matrix.data[claimedCell.row][claimedCell.col].checked = true;
-        } else {
-            matrix.data[claimedCell.row][claimedCell.col].districtNumber = 0;
-            matrix.data[claimedCell.row][claimedCell.col].checked = false;
-        }
-        return matrix;
+    /**
+     * Constructs a sampler that generates a district of size n in a (2n-1) by (2n-1) Squaretopia. The sampler owns its matrix and engine, so many samplers can run
+     * at once in one process as long as each of them is only used by one thread at a time.
+     * NOTE: This method forces the central cell of the adjusted matrix to be the first cell in the district. This allows us to generate unbounded districts.
+     * @param size Integer number of the Squaretopia's size
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @return void
+     */
+    public UnboundedSingleDistricter (int size, RandomStreams streams) {
+        this(size, streams, RestartSchedule.NONE);
     }
     
-    // returns a SquaretopiaCell with one neighbor if it exists 
-    public static SquaretopiaCell deadEnd (SquaretopiaMatrix matrix, Set<SquaretopiaCell> allPossibleTransitions) {
-        for(SquaretopiaCell cell : allPossibleTransitions) {
-            if(getTransitions(matrix, cell).size() == 1) {
-                return cell;
-            }
-        }
-        return null;
+    /**
+     * Constructs a sampler that generates a district of size n in a (2n-1) by (2n-1) Squaretopia. The sampler owns its matrix and engine, so many samplers can run
+     * at once in one process as long as each of them is only used by one thread at a time.
+     * NOTE: This method forces the central cell of the adjusted matrix to be the first cell in the district. This allows us to generate unbounded districts.
+     * @param size Integer number of the Squaretopia's size
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @param schedule RestartSchedule that limits the work of each attempt at a trial (see RestartSchedule.NONE)
+     * @return void
+     */
+    public UnboundedSingleDistricter (int size, RandomStreams streams, RestartSchedule schedule) {
+        int adjustedSize = ((size - 1) * 2 + 1) + 2; // add 2 for compatibility with outer padding of zeroes
+        this.matrix = new SquaretopiaMatrix(adjustedSize, adjustedSize, true);
+        this.freeCells = matrix.generateIndexedSetOfFreeCells();
+        this.engine = new DistrictingEngine(new MatrixBoard(matrix, freeCells), size, false);
+        this.streams = streams;
+        this.centralCell = matrix.index(size, size); // we must claim the central cell first to allow free generation of districts
+        this.schedule = schedule;
     }
     
-    // returns a SquaretopiaCell with one neighbor if it exists 
-    public static SquaretopiaCell isolatedCell (SquaretopiaMatrix matrix, Set<SquaretopiaCell> allPossibleTransitions) {
-        for(SquaretopiaCell cell : allPossibleTransitions) {
-            if(getTransitions(matrix, cell).size() == 0) {
-                return cell;
+    /**
+     * Generates a single district in the Squaretopia.
+     * @param trialIndex Integer index of the trial, which picks the trial's random number generator
+     * @return TrialResult of the single district along with the log probability of the accepted attempt's search
+     */
+    @Override
+    public TrialResult sample (int trialIndex) {
+        RandomGenerator random = streams.forTrial(trialIndex); // every retry of this trial draws from the trial's own generator
+        engine.metrics().trialStarted();
+        for(int attempt = 0; ; attempt++) {
+            engine.startAttempt(schedule.budget(attempt));
+            matrix.reset();
+            matrix.resetFreeCells(freeCells);
+            if(engine.growDistrict(centralCell, random)) { // we only need to generate one district
+                TrialResult result = new TrialResult(trialIndex, matrix, null, engine.logProposal());
+                engine.metrics().trialAccepted(trialIndex);
+                return result;
             }
+            engine.metrics().mapRejected();
         }
-        return null;
-    }
-    
-    // takes care of everything when claiming a free cell
-    public static void claimer (SquaretopiaMatrix matrix, Set<SquaretopiaCell> freeCells, Set<SquaretopiaCell> currentDistrict, SquaretopiaCell claimedCell) {
-        freeCells.remove(claimedCell);
-        updateMatrix(matrix, freeCells, claimedCell);
-        currentDistrict.add(claimedCell);
     }
     
-    // takes care of everything when returning an already claimed cell
-    public static void returner (SquaretopiaMatrix matrix, Set<SquaretopiaCell> freeCells, Set<SquaretopiaCell> currentDistrict, SquaretopiaCell returnedCell) {
-        freeCells.add(returnedCell);
-        currentDistrict.remove(returnedCell);
-        updateMatrix(matrix, freeCells, returnedCell);
-    }
-    
-    // determines the recently added transitions
-    public static Set<SquaretopiaCell> recentlyAddedTransitions (Set<SquaretopiaCell> freeCells, Set<SquaretopiaCell> transitions) {
-        Set<SquaretopiaCell> recentlyAddedTransitions = new HashSet<>();
-        for(SquaretopiaCell cell : transitions) {
-            if(freeCells.contains(cell) == false) {
-                recentlyAddedTransitions.add(cell);
-            }
-        }
-        return recentlyAddedTransitions;
+    /**
+     * @return SearchMetrics of this sampler's engine, which also count its rejected maps and time its accepted trials
+     */
+    @Override
+    public SearchMetrics metrics () {
+        return engine.metrics();
     }
     
 }
@@ -0,0 +1,142 @@
+package partition;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * UniformPartitioner.java
+ * UniformPartitioner partitions an n by n Squaretopia into n equally sized contiguous districts exactly uniformly at random, for
+ * n <= FrontierStates.MAX_SIZE, with the same output format as Partitioner.
+ * The cells are decided one at a time, row by row, on frontier states (see FrontierStates). The number of partitions that complete
+ * each state is known in advance (see CompletionCounts), so a trial draws one partition number r below the total count and follows it
+ * down the layers: at each cell, the choices are tried in order, and a choice is taken when r is below the completions of its child,
+ * otherwise r drops by that many completions. Each choice is therefore taken with probability (completions of the child) /
+ * (completions of the state), the probabilities of a path multiply out to 1 / count(), and a trial never backtracks or restarts.
+ * This is the reference the backtracking samplers can be checked against: their dead end and isolated cell moves make some partitions
+ * more likely than others, while every partition here is equally likely.
+ * NOTE: Building the CompletionCounts takes a few seconds for n = 6 and about half a minute for n = 7, so runs on many workers share
+ * one instance.
+ */
+public class UniformPartitioner implements TrialSampler {
+
+    private final int size;                  // n, the number of rows, columns and districts, and the number of cells in each district
+    private final CompletionCounts counts;   // completions of every frontier state, which may be shared with other samplers
+    private final FrontierStates frontier;   // this sampler's own scratch frontier for deciding cells
+    private final RandomStreams streams;     // random number generator of each trial
+    private final SearchMetrics metrics;     // counters of this sampler's trials
+    private final SquaretopiaMatrix matrix;  // Squaretopia that every trial fills in again to score its partition
+    private final CompactnessScores scores;  // reused by every trial to score its partition
+    private final int[] choices;             // choices[k] is the choice made for cell k by the current trial
+
+    /**
+     * Prepares the uniform Squaretopia partitioning process.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= FrontierStates.MAX_SIZE
+     * @param numOfTrials Integer number for the number of Squaretopias we will partition
+     * @return void
+     */
+    public static void Partition (int size, int numOfTrials) {
+        Partition(size, numOfTrials, PartitionOptions.DEFAULT);
+    }
+
+    /**
+     * Prepares the uniform Squaretopia partitioning process with the given options (see PartitionOptions).
+     * NOTE: The completion counts are built once, before the trials start, and shared by every worker of the runner.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= FrontierStates.MAX_SIZE
+     * @param numOfTrials Integer number for the number of Squaretopias we will partition
+     * @param options PartitionOptions that choose the random streams, result sink and runner of the run
+     * @return void
+     */
+    public static void Partition (int size, int numOfTrials, PartitionOptions options) {
+        CompletionCounts counts = new CompletionCounts(size);
+        options.run(numOfTrials, streams -> new UniformPartitioner(counts, streams));
+    }
+
+    /**
+     * Constructs a sampler that partitions an n by n Squaretopia uniformly, and counts the completions of its frontier states.
+     * @param size Integer number of the Squaretopia's size, where 1 <= size <= FrontierStates.MAX_SIZE
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @return void
+     */
+    public UniformPartitioner (int size, RandomStreams streams) {
+        this(new CompletionCounts(size), streams);
+    }
+
+    /**
+     * Constructs a sampler that partitions an n by n Squaretopia uniformly with completion counts that were built earlier.
+     * NOTE: The counts are only read, so many samplers on different threads can share them.
+     * @param counts CompletionCounts of the Squaretopia's frontier states, which also give its size
+     * @param streams RandomStreams that give each trial its own random number generator (see RandomStreams.seeded())
+     * @return void
+     */
+    public UniformPartitioner (CompletionCounts counts, RandomStreams streams) {
+        this.size = counts.size();
+        this.counts = counts;
+        this.frontier = new FrontierStates(size);
+        this.streams = streams;
+        this.metrics = new SearchMetrics();
+        int adjustedSize = size + 2; // includes the outer layer of padding cells
+        this.matrix = new SquaretopiaMatrix(adjustedSize, adjustedSize, true);
+        this.scores = new CompactnessScores(size);
+        this.choices = new int[size * size];
+    }
+
+    /**
+     * Partitions the Squaretopia with a single uniformly random draw, which is always valid.
+     * @param trialIndex Integer index of the trial, which picks the trial's random number generator
+     * @return TrialResult of the partition along with its compactness scores (LW RE SB PP) and its log probability, -log(count())
+     */
+    @Override
+    public TrialResult sample (int trialIndex) {
+        RandomGenerator random = streams.forTrial(trialIndex);
+        metrics.trialStarted();
+        long remaining = random.nextLong(counts.count()); // number of the partition among all of them, in the order of the choices
+        long state = FrontierStates.EMPTY;
+        for(int k = 0; k < choices.length; k++) {
+            for(int choice = 0; choice < FrontierStates.CHOICES; choice++) {
+                long child = frontier.transition(k, state, choice);
+                if(child < 0) {
+                    continue;
+                }
+                long completions = counts.completions(k + 1, child);
+                if(remaining < completions) {
+                    choices[k] = choice;
+                    state = child;
+                    break;
+                }
+                remaining -= completions;
+            }
+            metrics.cellClaimed();
+        }
+        fillMatrix(FrontierStates.districtsOf(choices, size));
+        TrialResult result = new TrialResult(trialIndex, matrix, matrix.calculateCompactnessScores(scores).toArray(), -Math.log(counts.count()));
+        metrics.trialAccepted(trialIndex);
+        return result;
+    }
+
+    /**
+     * @return SearchMetrics of this sampler, which count the cells it decided and time its trials (it never rejects a map)
+     */
+    @Override
+    public SearchMetrics metrics () {
+        return metrics;
+    }
+
+    /**
+     * @return CompletionCounts that this sampler draws its partitions with
+     */
+    public CompletionCounts completionCounts () {
+        return counts;
+    }
+
+    // fills in the matrix with the districts of a partition, so that its district shapes can be scored
+    private void fillMatrix(int[] districts) {
+        matrix.reset();
+        for(int row = 0; row < size; row++) {
+            for(int col = 0; col < size; col++) {
+                int k = matrix.index(row + 1, col + 1);
+                matrix.setDistrictNumber(k, districts[row * size + col]);
+                matrix.setChecked(k, true);
+            }
+        }
+    }
+
+}